@@ -0,0 +1,118 @@
+//**********************************************************/
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+//**********************************************************/
+
+/**
+ * Checks that the playout loop and the flat simulations allocate nothing once they are
+ * warmed up. The bytes allocated by the checking thread are read before and after a
+ * batch of playouts, and the check fails if the count moved. When the JIT installs
+ * compiled code in the middle of a batch, HotSpot now and then allocates a few hundred
+ * bytes on the running thread, whatever the loop does. So the check runs with the JIT
+ * compiling in the foreground. Run from the release3 folder:
+ *   javac -d /tmp/bench factoryDesign/*.java benchmark/*.java
+ *   java -XX:-BackgroundCompilation -cp /tmp/bench AllocationCheck
+ */
+public class AllocationCheck implements Game{
+
+    //* Fields
+    //**********************************************************/
+    private static final int WARMUP = 20_000; // playouts run before counting, so the JIT has compiled the loop
+    private static final int MEASURED = 10_000; // playouts the allocation is counted over
+    //**********************************************************/
+
+    //* Allocation check constructor, only static checks are provided
+    private AllocationCheck(){
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Check the playouts and flat simulations on every benchmark size, and exit with
+     * status 1 if any of them allocated.
+     */
+    public static void main(String[] args){
+        if (HotPathBenchmark.allocatedBytes() == 0) {
+            System.out.println("The virtual machine does not count allocated bytes, nothing is checked.");
+            return;
+        }
+        if (compilesInBackground()) {
+            System.out.println("Run the check with -XX:-BackgroundCompilation, the JIT allocates while it installs code.");
+            System.exit(2);
+        }
+        boolean failed = false;
+        for (int size : new int[] {3, 5, 7}) {
+            failed |= !check("playout", size, playouts(size));
+            failed |= !check("simulate", size, simulations(size));
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the HotSpot JIT compiles in the background, false if it compiles in
+     * the foreground or the virtual machine is not HotSpot.
+     */
+    static boolean compilesInBackground(){
+        HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        if (hotSpot == null) {
+            return false;
+        }
+        try {
+            return Boolean.parseBoolean(hotSpot.getVMOption("BackgroundCompilation").getValue());
+        } catch (IllegalArgumentException e) {
+            return false; // the option does not exist
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Run the warmup and the measured runs, print the bytes per run and return true
+     * if nothing was allocated.
+     */
+    static boolean check(String name, int size, Runnable runs){
+        for (int i = 0; i < WARMUP / MEASURED; i++) {
+            runs.run();
+        }
+        long before = HotPathBenchmark.allocatedBytes();
+        runs.run();
+        long allocated = HotPathBenchmark.allocatedBytes() - before;
+        System.out.printf("%-10s %dx%d %10.3f bytes per playout %s%n", name, size, size,
+            (double) allocated / MEASURED, allocated == 0 ? "ok" : "FAILED");
+        return allocated == 0;
+    }
+    //**********************************************************/
+
+    /*
+     * Return a batch of playouts on a board with two moves made, each taken back after it ends.
+     */
+    static Runnable playouts(int size){
+        State state = HotPathBenchmark.openingState(size, 2);
+        MonteCarloSearch rollout = new MonteCarloSearch(state, 0, new SplittableRandom(size));
+        int mark = state.getJournalSize();
+        return () -> {
+            for (int i = 0; i < MEASURED; i++) {
+                rollout.playOut(2);
+                state.undoTo(mark);
+            }
+        };
+    }
+    //**********************************************************/
+
+    /*
+     * Return a batch of scored flat simulations, run on the calling thread.
+     */
+    static Runnable simulations(int size){
+        State state = HotPathBenchmark.openingState(size, 2);
+        MonteCarloSearch search = new MonteCarloSearch(state, MEASURED, new SplittableRandom(size));
+        search.setCompMarker(Game.X);
+        search.setPlayerMarker(Game.O);
+        search.setAltNum(2);
+        return search::simulate;
+    }
+    //**********************************************************/
+}
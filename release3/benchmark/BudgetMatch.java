@@ -0,0 +1,104 @@
+//**********************************************************/
+import java.util.Locale;
+import java.util.SplittableRandom;
+//**********************************************************/
+
+/**
+ * Plays an engine with the default budget policy against an engine with the fixed
+ * simulation number, and reports the results of the policy engine together with the
+ * processor time each engine spent per game. The engines take turns to move first, and
+ * the first two moves of every game are random, drawn from a fixed seed, so that the
+ * games differ. Both engines search on one thread.
+ *
+ * Compile and run from the release3 folder:
+ *   javac -d /tmp/bench factoryDesign/*.java benchmark/*.java
+ *   java -cp /tmp/bench BudgetMatch [games] [-tree]
+ */
+public class BudgetMatch implements Game{
+
+    //* Fields
+    //**********************************************************/
+    private static final int[][] GAMES = {{5, 4}, {7, 4}}; // the board sizes and win lengths played
+    private static final long SEED = 20200424L; // the openings and the searches derive from this seed
+    private static final int OPENING = 2; // random moves at the start of every game
+    //**********************************************************/
+
+    //* Budget match constructor, only static matches are provided
+    private BudgetMatch(){
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Play the match on every board, and print one line per board.
+     */
+    public static void main(String[] args){
+        int games = 40;
+        boolean tree = false;
+        for (String arg : args) {
+            if (arg.equals("-tree")) { // both engines search a tree
+                tree = true;
+            } else {
+                games = Integer.parseInt(arg);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-6s %6s %6s %6s %6s %12s %12s%n", "board", "games", "wins", "draws",
+            "losses", "policy ms", "fixed ms");
+        for (int[] game : GAMES) {
+            play(game[0], game[1], games, tree);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Play the games on one board, and print the results of the policy engine and the
+     * average processor time per game of both engines.
+     */
+    private static void play(int size, int winLength, int games, boolean tree){
+        int[] results = new int[3]; // losses, draws and wins of the policy engine
+        long[] cpuNanos = new long[2]; // processor time of the policy engine and the fixed engine
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int g = 0; g < games; g++) {
+            Engine[] engines = {new Engine(size, winLength), new Engine(size, winLength)};
+            engines[0].setBudgetPolicy(new BudgetPolicy());
+            for (Engine engine : engines) {
+                engine.setTreeParallel(tree);
+                engine.setWorkerCount(1);
+                engine.setStopConfidence(0.99); // both engines stop settled searches, as the match was measured
+                engine.setSeed(SEED + g);
+                engine.newGame();
+            }
+            int policySide = g % 2; // the policy engine plays "X" in even games
+            Position position = new Position(size);
+            State state = new LineCountState(size, winLength);
+            state.createButtons();
+            while (true) {
+                int side = position.getMoveNumber() % 2;
+                int cell;
+                if (position.getMoveNumber() < OPENING) {
+                    do {
+                        cell = random.nextInt(size * size);
+                    } while (!position.getCell(cell).equals(Game.Empty));
+                } else {
+                    int engine = side == policySide ? 0 : 1;
+                    SearchResult result = engines[engine].search(position);
+                    cpuNanos[engine] += result.getCpuNanos();
+                    cell = result.getRow() * size + result.getCol();
+                }
+                String marker = position.getSideToMove();
+                position = position.play(cell / size, cell % size);
+                state.setMoveNumber(position.getMoveNumber());
+                state.recordPlayData(cell / size, cell % size, marker);
+                state.setClickedButton(cell / size, cell % size, marker);
+                if (state.isPresentMoveTerminal()) {
+                    results[state.isDraw ? 1 : (side == policySide ? 2 : 0)]++;
+                    break;
+                }
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-6s %6d %6d %6d %6d %12.1f %12.1f%n", size + "/" + winLength, games,
+            results[2], results[1], results[0], cpuNanos[0] / 1e6 / games, cpuNanos[1] / 1e6 / games);
+    }
+    //**********************************************************/
+}
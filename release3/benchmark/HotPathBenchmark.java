@@ -0,0 +1,301 @@
+//**********************************************************/
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+//**********************************************************/
+
+/**
+ * Measures the hot paths of State and MonteCarloSearch on 3x3, 5x5 and 7x7 boards. Every
+ * benchmark is set up from fixed seeds, so the numbers of two commits can be compared.
+ * For every benchmark and size the throughput in operations per second and the memory
+ * allocated by the benchmark thread, per operation and per second, are reported.
+ *
+ * Compile and run from the release3 folder:
+ *   javac -d /tmp/bench factoryDesign/*.java benchmark/*.java
+ *   java -cp /tmp/bench HotPathBenchmark [name filter] [-quick] [-legacy]
+ * The benchmarks run on the line count state, -legacy runs them on the original State.
+ */
+public class HotPathBenchmark implements Game{
+
+    //* Fields
+    //**********************************************************/
+    private static final int[] SIZES = {3, 5, 7}; // the board sizes measured
+    private static final long SEED = 20200424L; // every random choice of the benchmarks derives from this seed
+    private static final int BATCH = 64; // operations between two looks at the clock
+
+    private static int warmupIterations = 3; // iterations run before measuring, to let the JIT settle
+    private static int measuredIterations = 5; // iterations the results are taken from
+    private static long iterationNanos = 1_000_000_000L; // how long an iteration runs
+    private static boolean legacyState; // measure the original State in place of the line count state
+    private static long sink; // every operation result goes here, so the JIT keeps the work
+    private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final String name; // the benchmark name
+    private final int size; // the board size
+    private final LongSupplier operation; // one operation of the benchmark
+    //**********************************************************/
+
+    //* Hot path benchmark constructor
+    HotPathBenchmark(String name, int size, LongSupplier operation){
+        this.name = name;
+        this.size = size;
+        this.operation = operation;
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Run every benchmark whose name contains the filter, on every size.
+     */
+    public static void main(String[] args){
+        String filter = "";
+        for (String arg : args) {
+            if (arg.equals("-quick")) { // a fast look, the numbers are noisier
+                warmupIterations = 1;
+                measuredIterations = 3;
+                iterationNanos = 200_000_000L;
+            } else if (arg.equals("-legacy")) {
+                legacyState = true;
+            } else {
+                filter = arg;
+            }
+        }
+        System.out.printf("%-22s %4s %14s %10s %12s %10s%n", "Benchmark", "size", "ops/s", "error", "B/op", "MB/s");
+        for (int size : SIZES) {
+            for (HotPathBenchmark benchmark : createBenchmarks(size)) {
+                if (benchmark.name.contains(filter)) {
+                    benchmark.run();
+                }
+            }
+        }
+        if (sink == 42) {
+            System.out.println(); // never true in practice, keeps the sink alive
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Create the benchmarks of one board size. Every benchmark gets its own fixture.
+     */
+    static List<HotPathBenchmark> createBenchmarks(int size){
+        List<HotPathBenchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new HotPathBenchmark("recordPlayData", size, recordPlayData(size)));
+        benchmarks.add(new HotPathBenchmark("storeRestoreState", size, storeRestoreState(size)));
+        benchmarks.add(new HotPathBenchmark("isNextMoveTerminal", size, isNextMoveTerminal(size)));
+        benchmarks.add(new HotPathBenchmark("threatCell", size, threatCell(size)));
+        benchmarks.add(new HotPathBenchmark("playout", size, playout(size)));
+        benchmarks.add(new HotPathBenchmark("selectBestIndex", size, selectBestIndex(size)));
+        return benchmarks;
+    }
+    //**********************************************************/
+
+    /*
+     * Return a game order of every button index, shuffled with the fixed seed.
+     */
+    static int[] gameOrder(int size){
+        SplittableRandom random = new SplittableRandom(SEED + size);
+        int[] order = new int[size * size];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int k = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[k];
+            order[k] = t;
+        }
+        return order;
+    }
+    //**********************************************************/
+
+    /*
+     * Return a state of the given size with the first moves of the game order played,
+     * the last of them recorded as the clicked button.
+     */
+    static State openingState(int size, int moves){
+        State state = legacyState ? new State(size) : new LineCountState(size);
+        state.createButtons();
+        int[] order = gameOrder(size);
+        for (int k = 0; k < moves; k++) {
+            int row = order[k] / size;
+            int col = order[k] % size;
+            String marker = k % 2 == 0 ? Game.X : Game.O;
+            state.setMoveNumber(k + 1);
+            state.recordPlayData(row, col, marker);
+            state.setClickedButton(row, col, marker);
+        }
+        return state;
+    }
+    //**********************************************************/
+
+    /*
+     * Record the moves of the game order one at a time. Once the board is full the
+     * moves are taken back in one go, which is part of the measured cost.
+     */
+    static LongSupplier recordPlayData(int size){
+        State state = openingState(size, 0);
+        int[] order = gameOrder(size);
+        int mark = state.getJournalSize();
+        int[] next = new int[1];
+        return () -> {
+            if (next[0] == order.length) {
+                state.undoTo(mark);
+                next[0] = 0;
+            }
+            int k = next[0]++;
+            state.recordPlayData(order[k] / size, order[k] % size, k % 2 == 0 ? Game.X : Game.O);
+            return state.getHash();
+        };
+    }
+    //**********************************************************/
+
+    /*
+     * Store the state of a half full board and restore it again.
+     */
+    static LongSupplier storeRestoreState(int size){
+        State state = openingState(size, size * size / 2);
+        return () -> {
+            state.storePresentState();
+            state.restoreOriginalState();
+            return state.getEmptyCount();
+        };
+    }
+    //**********************************************************/
+
+    /*
+     * Ask, for every occupied button of a half full board in turn, whether a line through
+     * it can be completed with the next move.
+     */
+    static LongSupplier isNextMoveTerminal(int size){
+        State state = openingState(size, size * size / 2);
+        int[] order = gameOrder(size);
+        int occupied = size * size / 2;
+        int[] next = new int[1];
+        return () -> {
+            int cell = order[next[0]];
+            next[0] = (next[0] + 1) % occupied;
+            return state.isNextMoveTerminal(cell / size, cell % size) ? 1 : 0;
+        };
+    }
+    //**********************************************************/
+
+    /*
+     * Look up a move which completes a line anywhere on a half full board, for each
+     * marker in turn.
+     */
+    static LongSupplier threatCell(int size){
+        State state = openingState(size, size * size / 2);
+        int[] next = new int[1];
+        return () -> state.threatCell(next[0]++ % 2 == 0 ? Game.XCell : Game.OCell);
+    }
+    //**********************************************************/
+
+    /*
+     * Play one random game to the end from a board with two moves made, and take it back.
+     */
+    static LongSupplier playout(int size){
+        State state = openingState(size, 2);
+        MonteCarloSearch rollout = new MonteCarloSearch(state, 0, new SplittableRandom(SEED));
+        int mark = state.getJournalSize();
+        return () -> {
+            rollout.playOut(2);
+            long result = state.isDraw ? 0 : state.winMarker.hashCode();
+            state.undoTo(mark);
+            return result;
+        };
+    }
+    //**********************************************************/
+
+    /*
+     * Choose the move of a board with two moves made, with a flat search of 200 simulations
+     * on the calling thread. The scores are cleared before every search.
+     */
+    static LongSupplier selectBestIndex(int size){
+        State state = openingState(size, 2);
+        MonteCarloSearch search = new MonteCarloSearch(size);
+        search.setState(state);
+        search.setSeed(SEED);
+        search.setNodeBudget(200);
+        search.setCompMarker(Game.X);
+        search.setPlayerMarker(Game.O);
+        search.setAltNum(2);
+        return () -> {
+            state.clearWinScores();
+            search.setImmediateExists(false);
+            search.selectBestIndex();
+            return search.getIndexBest();
+        };
+    }
+    //**********************************************************/
+
+    /*
+     * Run the warmup and measured iterations and print the mean throughput with the
+     * half width of its 99.9% confidence interval, as well as the allocation of the
+     * benchmark thread.
+     */
+    void run(){
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration();
+        }
+        double[] opsPerSecond = new double[measuredIterations];
+        long ops = 0;
+        long bytes = 0;
+        long nanos = 0;
+        for (int i = 0; i < measuredIterations; i++) {
+            long[] measured = iteration();
+            opsPerSecond[i] = measured[0] * 1e9 / measured[2];
+            ops += measured[0];
+            bytes += measured[1];
+            nanos += measured[2];
+        }
+        double mean = 0;
+        for (double value : opsPerSecond) {
+            mean += value / measuredIterations;
+        }
+        double variance = 0;
+        for (double value : opsPerSecond) {
+            variance += (value - mean) * (value - mean) / Math.max(1, measuredIterations - 1);
+        }
+        double error = 3.29 * Math.sqrt(variance / measuredIterations);
+        System.out.printf(Locale.ROOT, "%-22s %4d %14.1f %10.1f %12.2f %10.2f%n", name, size, mean, error,
+            (double) bytes / ops, bytes * 1e9 / nanos / (1024 * 1024));
+    }
+    //**********************************************************/
+
+    /*
+     * Run the operation for one iteration, and return the operation count, the bytes the
+     * thread allocated and the elapsed nanoseconds.
+     */
+    long[] iteration(){
+        long ops = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int k = 0; k < BATCH; k++) {
+                sink += operation.getAsLong();
+            }
+            ops += BATCH;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        long allocated = allocatedBytes() - allocatedBefore;
+        return new long[] {ops, allocated, elapsed};
+    }
+    //**********************************************************/
+
+    /*
+     * Return the bytes allocated by the calling thread so far, 0 if the virtual machine
+     * does not count them.
+     */
+    static long allocatedBytes(){
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+    //**********************************************************/
+}
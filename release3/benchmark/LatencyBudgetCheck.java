@@ -0,0 +1,83 @@
+/**
+ * Checks which simulation budget a search runs when a latency target and a simulation
+ * budget are both set. The budget set with setNodeBudget wins, and clearing the latency
+ * target leaves it alone. The early stopping rule is off, so every search runs its
+ * whole budget. Run from the release3 folder:
+ *   javac -d /tmp/bench factoryDesign/*.java benchmark/*.java
+ *   java -cp /tmp/bench LatencyBudgetCheck
+ */
+public class LatencyBudgetCheck implements Game{
+
+    //* Fields
+    //**********************************************************/
+    private static final int SIZE = 7; // the board the searches run on
+    private static final int WIN_LENGTH = 4;
+    private static final long LATENCY_MILLIS = 20; // the latency target of the checks
+    private static final int NODE_BUDGET = 300; // the simulation budget of the checks
+    private static final int DEFAULT_SIMULATIONS = 1500; // what a search runs without either budget
+    //**********************************************************/
+
+    //* Latency budget check constructor, only static checks are provided
+    private LatencyBudgetCheck(){
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Set the budgets one after the other on a single engine, and exit with status 1 if
+     * any search ran another number of simulations than expected.
+     */
+    public static void main(String[] args){
+        Engine engine = new Engine(SIZE, WIN_LENGTH);
+        engine.setWorkerCount(1);
+        engine.setSolverLimit(0);
+        engine.setSeed(1);
+        boolean failed = false;
+
+        engine.setLatencyTarget(LATENCY_MILLIS);
+        SearchResult result = search(engine);
+        int latencyBudget = result.getLatencyBudget();
+        failed |= !check("latency target alone", result, latencyBudget,
+            latencyBudget > 0 && result.getPlayoutsPerSecond() > 0);
+
+        engine.setNodeBudget(NODE_BUDGET);
+        failed |= !check("node budget and target", search(engine), NODE_BUDGET, true);
+
+        engine.setLatencyTarget(0);
+        result = search(engine);
+        failed |= !check("target cleared", result, NODE_BUDGET, result.getLatencyBudget() == 0);
+
+        engine.setLatencyTarget(LATENCY_MILLIS);
+        engine.setNodeBudget(0);
+        failed |= !check("node budget cleared", search(engine), latencyBudget, true);
+
+        engine.setLatencyTarget(0);
+        failed |= !check("neither", search(engine), DEFAULT_SIMULATIONS, true);
+        if (failed) {
+            System.exit(1);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Search the empty board from a new game.
+     */
+    private static SearchResult search(Engine engine){
+        engine.newGame();
+        return engine.search(new Position(SIZE));
+    }
+    //**********************************************************/
+
+    /*
+     * Print the simulations the search ran and the budgets of its result, and return true
+     * if it ran the expected number and the extra condition holds.
+     */
+    private static boolean check(String name, SearchResult result, int expected, boolean condition){
+        boolean ok = condition && result.getCompletedSimulations() == expected;
+        System.out.printf("%-24s simulations=%-6d expected=%-6d latency budget=%-6d %s%n", name,
+            result.getCompletedSimulations(), expected, result.getLatencyBudget(), ok ? "ok" : "FAILED");
+        return ok;
+    }
+    //**********************************************************/
+}
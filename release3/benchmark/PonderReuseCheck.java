@@ -0,0 +1,63 @@
+/**
+ * Checks that the search of every reply takes over simulations from the ponder, the
+ * replies the board symmetries map onto others included. The engine plays the center
+ * of an empty 5x5 board, ponders while the player answers, and then searches the
+ * answer. The check fails if a search starts without reused simulations. Run from the
+ * release3 folder:
+ *   javac -d /tmp/bench factoryDesign/*.java benchmark/*.java
+ *   java -cp /tmp/bench PonderReuseCheck
+ */
+public class PonderReuseCheck implements Game{
+
+    //* Fields
+    //**********************************************************/
+    private static final int SIZE = 5; // the board, with the center move it is symmetric under all eight symmetries
+    private static final int WIN_LENGTH = 4;
+    private static final int NODE_BUDGET = 200; // the simulations of a move, the ponder runs this for every reply
+    //**********************************************************/
+
+    //* Ponder reuse check constructor, only static checks are provided
+    private PonderReuseCheck(){
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Ponder the center opening and search every reply of the player, and exit with
+     * status 1 if the search of any reply reused nothing.
+     */
+    public static void main(String[] args){
+        Position opening = new Position(SIZE).play(SIZE / 2, SIZE / 2);
+        boolean failed = false;
+        for (int cell = 0; cell < SIZE * SIZE; cell++) {
+            if (opening.getCell(cell).equals(Game.Empty)) {
+                failed |= !check(opening, cell / SIZE, cell % SIZE);
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Ponder the opening on a new engine, search the reply at the given button, print
+     * the simulations taken over and return true if there were any.
+     */
+    private static boolean check(Position opening, int row, int col){
+        Engine engine = new Engine(SIZE, WIN_LENGTH);
+        engine.setPondering(true);
+        engine.setWorkerCount(1);
+        engine.setNodeBudget(NODE_BUDGET);
+        engine.setSeed(1);
+        engine.newGame();
+        engine.ponder(opening);
+        SearchResult result = engine.search(opening.play(row, col));
+        boolean ok = result.getReusedSimulations() > 0;
+        System.out.printf("reply %d,%d pondered=%-6d reused=%-6d %s%n", row, col, engine.getPonderedSimulations(),
+            result.getReusedSimulations(), ok ? "ok" : "FAILED");
+        return ok;
+    }
+    //**********************************************************/
+}
@@ -0,0 +1,155 @@
+//**********************************************************/
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+//**********************************************************/
+
+/**
+ * Compares the move quality of the tree search with and without RAVE over a range of
+ * simulation budgets. The positions are drawn from fixed seeds on a 5x5 board with four
+ * in a row, and every move of a position is labelled by the exact solver. A chosen move
+ * is good if it keeps the value of the position. Positions in which every move has the
+ * same value, or a line can be completed or has to be blocked at once, are left out,
+ * since they say nothing about the search.
+ *
+ * Compile and run from the release3 folder:
+ *   javac -d /tmp/bench factoryDesign/*.java benchmark/*.java
+ *   java -cp /tmp/bench RaveBenchmark [equivalence] [-quick]
+ */
+public class RaveBenchmark implements Game{
+
+    //* Fields
+    //**********************************************************/
+    private static final int SIZE = 5; // the board size
+    private static final int WIN_LENGTH = 4; // the markers in a row needed to win
+    private static final int EMPTY = 16; // the free buttons of every position, few enough to solve quickly
+    private static final long SEED = 20200424L; // the positions and the searches derive from this seed
+    private static final int[] BUDGETS = {100, 200, 500, 1000, 2000, 5000}; // simulations per move
+    //**********************************************************/
+
+    //* Rave benchmark constructor, only static benchmarks are provided
+    private RaveBenchmark(){
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Print the share of good moves per budget, plain UCT against RAVE.
+     */
+    public static void main(String[] args){
+        int equivalence = 50;
+        int positionCount = 100;
+        for (String arg : args) {
+            if (arg.equals("-quick")) { // fewer positions, the shares are noisier
+                positionCount = 30;
+            } else {
+                equivalence = Integer.parseInt(arg);
+            }
+        }
+        long start = System.nanoTime();
+        List<Position> positions = new ArrayList<>();
+        List<boolean[]> goodMoves = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(SEED);
+        Solver solver = new Solver(SIZE, WIN_LENGTH);
+        while (positions.size() < positionCount) {
+            Position position = randomPosition(random);
+            boolean[] good = position == null ? null : label(position, solver);
+            if (good != null) {
+                positions.add(position);
+                goodMoves.add(good);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%d positions of %dx%d, %d in a row, labelled in %d ms, equivalence %d%n",
+            positionCount, SIZE, SIZE, WIN_LENGTH, (System.nanoTime() - start) / 1_000_000, equivalence);
+        System.out.printf(Locale.ROOT, "%10s %10s %10s%n", "budget", "uct", "rave");
+        for (int budget : BUDGETS) {
+            double uct = quality(positions, goodMoves, budget, 0);
+            double rave = quality(positions, goodMoves, budget, equivalence);
+            System.out.printf(Locale.ROOT, "%10d %9.1f%% %9.1f%%%n", budget, 100 * uct, 100 * rave);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return a position after random moves, or null if a line was completed on the way.
+     */
+    private static Position randomPosition(SplittableRandom random){
+        Position position = new Position(SIZE);
+        State state = new LineCountState(SIZE, WIN_LENGTH);
+        state.createButtons();
+        while (SIZE * SIZE - position.getMoveNumber() > EMPTY) {
+            int cell;
+            do {
+                cell = random.nextInt(SIZE * SIZE);
+            } while (!position.getCell(cell).equals(Game.Empty));
+            String marker = position.getSideToMove();
+            position = position.play(cell / SIZE, cell % SIZE);
+            state.setMoveNumber(position.getMoveNumber());
+            state.recordPlayData(cell / SIZE, cell % SIZE, marker);
+            state.setClickedButton(cell / SIZE, cell % SIZE, marker);
+            if (state.isPresentMoveTerminal()) {
+                return null;
+            }
+        }
+        if (state.threatCell(Game.XCell) != -1 || state.threatCell(Game.OCell) != -1) {
+            return null; // the engine answers these without searching
+        }
+        return position;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the moves which keep the value of the position, or null if every free button
+     * has the same value.
+     */
+    private static boolean[] label(Position position, Solver solver){
+        int[] values = new int[SIZE * SIZE];
+        int best = -2;
+        int worst = 2;
+        for (int cell = 0; cell < SIZE * SIZE; cell++) {
+            if (!position.getCell(cell).equals(Game.Empty)) {
+                continue;
+            }
+            Position next = position.play(cell / SIZE, cell % SIZE);
+            values[cell] = SIZE * SIZE - next.getMoveNumber() == 0 ? 0 : -solver.solve(next).getGameValue();
+            best = Math.max(best, values[cell]);
+            worst = Math.min(worst, values[cell]);
+        }
+        if (best == worst) {
+            return null;
+        }
+        boolean[] good = new boolean[SIZE * SIZE];
+        for (int cell = 0; cell < SIZE * SIZE; cell++) {
+            good[cell] = position.getCell(cell).equals(Game.Empty) && values[cell] == best;
+        }
+        return good;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the share of positions in which a single threaded tree search with the
+     * given budget picks a good move. Every search starts from an empty table.
+     */
+    private static double quality(List<Position> positions, List<boolean[]> goodMoves, int budget, int equivalence){
+        Engine engine = new Engine(SIZE, WIN_LENGTH);
+        engine.setWorkerCount(1);
+        engine.setTreeParallel(true);
+        engine.setSolverLimit(0);
+        engine.setNodeBudget(budget);
+        engine.setStopConfidence(0); // every search runs its whole budget
+        engine.setRaveEquivalence(equivalence);
+        int good = 0;
+        for (int p = 0; p < positions.size(); p++) {
+            engine.newGame();
+            engine.setSeed(SEED + p);
+            SearchResult result = engine.search(positions.get(p));
+            if (goodMoves.get(p)[result.getRow() * SIZE + result.getCol()]) {
+                good++;
+            }
+        }
+        return (double) good / positions.size();
+    }
+    //**********************************************************/
+}
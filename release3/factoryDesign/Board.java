@@ -2,10 +2,16 @@
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JButton;
+import javax.swing.SwingUtilities;
 import java.awt.event.ActionEvent; // these two are needed to sniff mouse clicks
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.*; // needed for GridLayout, and for ActionListener
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 //**********************************************************/
 
 
@@ -21,7 +27,10 @@ public class Board implements ActionListener, Game {
     JButton[][] frameButtons; // a collection of buttons in a 2D format
     ArrayList<JButton> fButtonsList; // an array list of the board buttons
     State state; // keeps track of the game state
-    MonteCarloSearch mSearch; // enables monte carlo search
+    Engine engine; // searches the computer moves, the board only passes it positions
+    private static ExecutorService searchExecutor; // runs the engine searches away from the event thread
+    private Future<?> pendingSearch; // the search of the computer move, null if the computer is not thinking
+    private boolean thinking; // true while the computer thinks, clicks on the board are ignored
     private boolean compMovesFirst; // determines if the computer moves first
     private boolean compPlayStatus; // determines if the computer is allowed to play
     String marker; // the game marker, an "X" or an "O"
@@ -33,12 +42,15 @@ public class Board implements ActionListener, Game {
         this.frameSize = frameSize;
         this.frameButtons = new JButton[frameSize][frameSize]; // the 2D buttons are created
         gameFactory = new GameFactory();
-        state = (State) gameFactory.getGameType(ObjectChoice.stateObject);
+        state = (State) gameFactory.getGameType(ObjectChoice.lineCountStateObject);
         JFrame.setDefaultLookAndFeelDecorated(true); // the frame with the squares is decorated
         frame = new JFrame("Tic Tac Toe"); // create a frame for the grid, with a label
         frame.setResizable(false);
         fButtonsList = new ArrayList<>();// create an array list for the buttons
-        mSearch = (MonteCarloSearch) gameFactory.getGameType(ObjectChoice.mSearchObject);
+        engine = (Engine) gameFactory.getGameType(ObjectChoice.engineObject);
+        if (engine.usesMonteCarloSearch()) { // 3x3 and 4x4 are answered by the table and the solver
+            engine.setWorkerCount(Runtime.getRuntime().availableProcessors()); // one search worker per core
+        }
     }
     //**********************************************************/
     
@@ -92,19 +104,24 @@ public class Board implements ActionListener, Game {
         
         frame.setVisible(true); // make the frame visible
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // if we close the frame, the program ends
+        frame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent event) {
+                    cancelSearch(); // stop thinking before the frame goes
+                }
+            });
         
         state.createButtons(); // create the state buttons to queue terminal choices
-        mSearch.setState(state); // transport the state information to the monte carlo search
     }
     //**********************************************************/
 
     /*
-     * Adjust the markers accordingly if the computer is set to move second
+     * Prepare the engine if the computer is set to move second, the engine plays
+     * whichever marker is to move in the positions it is given
      */
     public void compMovesSecond(){
         if (compPlayStatus && !compMovesFirst) {
-            mSearch.setCompMarker(Game.O);
-            mSearch.setPlayerMarker(Game.X);
+            engine.newGame();
         }
     }
     //**********************************************************/
@@ -116,29 +133,85 @@ public class Board implements ActionListener, Game {
     public void makeCompFirstMove(){
         // if the computerStatus is true, and compMovesFirst is true
         if (compPlayStatus && compMovesFirst) {
+            playComputerMove(); // the computer will play as "X"
+        }
+    }
+    //**********************************************************/
 
-            mSearch.setCompMarker(Game.X); // the computer will play as "X"
-            mSearch.setPlayerMarker(Game.O);
+    /*
+     * Ask the engine for the best move in the present position. The search runs on the
+     * search thread while the board ignores clicks, and the move is applied back on the
+     * event thread. A pondering engine then goes on to search the position the user has
+     * to answer, on the same thread, until the next click stops it.
+     */
+    public void playComputerMove(){
+        Position position = currentPosition(); // read the frame buttons on the event thread
+        thinking = true;
+        engine.stopPondering(); // the ponder on the search thread gives way to the search
+        pendingSearch = getSearchExecutor().submit(() -> {
+            SearchResult result = engine.search(position);
+            SwingUtilities.invokeLater(() -> finishComputerMove(result));
+            if (!result.isCancelled()) {
+                engine.ponder(position.play(result.getRow(), result.getCol()));
+            }
+        });
+    }
+    //**********************************************************/
 
-            // pass to monte carlo the alternating num value so markers are handled accordingly
-            mSearch.setAltNum(alternatingNum); 
-            mSearch.selectBestIndex();
+    /*
+     * Apply the move of a finished search, unless the search was cancelled meanwhile
+     */
+    public void finishComputerMove(SearchResult result){
+        if (!thinking || result.isCancelled()) {
+            return;
+        }
+        thinking = false;
+        pendingSearch = null;
+        applyComputerChoice(result.getRow(), result.getCol(), result.getMarker());
+    }
+    //**********************************************************/
 
-            // if an immediate terminal move exists
-            if (mSearch.getImmediateStatus()) {
-                int row = mSearch.getImmRow(); // obtain its location
-                int col = mSearch.getImmCol();
-                marker = mSearch.getComputerMarker(); // and marker symbol
-                applyComputerChoice(row, col, marker); // apply the terminal move
-                mSearch.setImmediateExists(false); // set the value to false, so that other games start fresh
-            } else {
-                int bestIndex = mSearch.getIndexBest(); // if no immediate terminal move, obtain the 
-                int row = state.buttonList.get(bestIndex).getRow(); // location given by the monte carlo 
-                int col = state.buttonList.get(bestIndex).getCol(); // search results
-                marker = mSearch.getComputerMarker(); // set the marker accordingly
-                applyComputerChoice(row, col, marker); // and apply the choice
+    /*
+     * Stop the computer from thinking, its move is dropped
+     */
+    public void cancelSearch(){
+        engine.stopPondering();
+        if (pendingSearch != null) {
+            engine.cancel(); // ends a running search at its next simulation
+            pendingSearch.cancel(false); // and drops a search which has not started yet
+            pendingSearch = null;
+        }
+        thinking = false;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the thread which runs the engine searches. It is a daemon, so closing the
+     * game frame still ends the program.
+     */
+    static synchronized ExecutorService getSearchExecutor(){
+        if (searchExecutor == null) {
+            searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "engine-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return searchExecutor;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the position shown by the frame buttons
+     */
+    public Position currentPosition(){
+        String[] cells = new String[frameSize * frameSize];
+        for (int i = 0; i < frameSize; i++) {
+            for (int j = 0; j < frameSize; j++) {
+                cells[i * frameSize + j] = frameButtons[i][j].getText();
             }
         }
+        return new Position(frameSize, cells, alternatingNum % 2 == 0 ? Game.X : Game.O);
     }
     //**********************************************************/
 
@@ -156,6 +229,8 @@ public class Board implements ActionListener, Game {
         
         if(!buttonClicked.getText().equals(Game.Empty)) // make sure clicked buttons don't change if clicked again
             return;
+        if (thinking) // the board is locked while the computer thinks
+            return;
 
         // clicking alternating buttons, produces alternating X and O
         marker = this.alternatingNum % 2 == 0 ? Game.X : Game.O;
@@ -191,21 +266,7 @@ public class Board implements ActionListener, Game {
         } else { // if the present move is not terminal
 
             if (compPlayStatus) { // and the computer play option is available
-                mSearch.setAltNum(alternatingNum); // transfer the proper alternating number to the monte carlo search
-                mSearch.selectBestIndex();
-                if (mSearch.getImmediateStatus()) { // if there are immediate terminal moves
-                    int row = mSearch.getImmRow(); // get their location
-                    int col = mSearch.getImmCol();
-                    marker = mSearch.getComputerMarker(); // and marker symbol
-                    applyComputerChoice(row, col, marker); // and apply them
-                    mSearch.setImmediateExists(false); // reset for a new game
-                } else { // if no terminal moves exist
-                    int bestIndex = mSearch.getIndexBest(); // find the best option offered by a monte carlo search
-                    int row = state.buttonList.get(bestIndex).getRow();
-                    int col = state.buttonList.get(bestIndex).getCol();
-                    marker = mSearch.getComputerMarker(); 
-                    applyComputerChoice(row, col, marker); // and apply the choice
-                }
+                playComputerMove(); // let the engine answer the move
             }            
         }        
     }
@@ -220,12 +281,8 @@ public class Board implements ActionListener, Game {
         state.setMoveNumber(alternatingNum); // and inform the state of the change
         state.recordPlayData(row, col, marker); // record the move on the state
         state.setClickedButton(row, col, marker); // record the clicked button info on the state
-
-        mSearch.setAltNum(alternatingNum); // pass the updated alternating number to the monte carlo search
         frameButtons[row][col].setText(marker); // make the move visible on the board
 
-        mSearch.setCompClickedButton(row, col); // inform monte carlo that the button is clicked
-
         if (state.isPresentMoveTerminal()) { // if the compute made move is terminal
 
             if (!state.isDraw) { // inform the user who won, and if they want to play again
@@ -253,6 +310,7 @@ public class Board implements ActionListener, Game {
      * Set all the button markers to an empty state
      */ 
     public void clearButtons(){
+        cancelSearch(); // a new game stops the computer from thinking about the old one
         for (int i = 0; i < fButtonsList.size(); i++) {
             fButtonsList.get(i).setText(Game.Empty);
         }
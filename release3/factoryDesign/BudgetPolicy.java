@@ -0,0 +1,152 @@
+public class BudgetPolicy implements Game{
+
+    //* Fields
+    //**********************************************************/
+    // Decides how many simulations a move gets. The plan grows with the legal moves and
+    // with the open threats of both parties, the lines one move away from a threat, and
+    // is kept within a minimum and a maximum. When the planned simulations leave the
+    // top moves close together the search is extended, until the maximum is reached.
+    // A game may also be given a cap on the processor time of all its searches. Every
+    // move then gets an equal share of what is left, over the moves the computer is
+    // expected to make still. Few games fill the board, so at most expectedMoves are
+    // counted, and the earlier moves, which shape the game, get the larger shares. The
+    // cap is soft, a move never gets less than MIN_MOVE_NANOS.
+    //**********************************************************/
+    static final long MIN_MOVE_NANOS = 2_000_000L; // the smallest time share of a move
+
+    private int playoutsPerMove; // simulations planned for every legal move
+    private int minPlayouts; // the fewest simulations a move is planned with
+    private int maxPlayouts; // the most simulations a move may take, extensions included
+    private double threatWeight; // the share of the plan added for every open threat
+    private double closeMargin; // win rates of the top moves closer than this extend the search
+    private long gameCpuCapNanos; // the processor time all searches of a game may take, 0 for no cap
+    private int expectedMoves; // the most moves the rest of the cap is shared among
+    private long gameCpuNanos; // the processor time the searches of the present game took
+    //**********************************************************/
+
+    //* Budget policy constructor, the default settings
+    BudgetPolicy(){
+        playoutsPerMove = 40;
+        minPlayouts = 400;
+        maxPlayouts = 1500; // no move takes more than the fixed simulation number
+        threatWeight = 0.05;
+        closeMargin = 0.01;
+        expectedMoves = 8;
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Set the simulations planned for every legal move.
+     */
+    public void setPlayoutsPerMove(int playoutsPerMove){
+        this.playoutsPerMove = Math.max(1, playoutsPerMove);
+    }
+    //**********************************************************/
+
+    /*
+     * Set the fewest simulations a move is planned with, and the most it may take.
+     */
+    public void setPlayoutRange(int minPlayouts, int maxPlayouts){
+        if (minPlayouts < 1 || maxPlayouts < minPlayouts) {
+            throw new IllegalArgumentException("The playout range " + minPlayouts + " to " + maxPlayouts + " is empty.");
+        }
+        this.minPlayouts = minPlayouts;
+        this.maxPlayouts = maxPlayouts;
+    }
+    //**********************************************************/
+
+    /*
+     * Set the share of the plan added for every open threat.
+     */
+    public void setThreatWeight(double threatWeight){
+        this.threatWeight = Math.max(0, threatWeight);
+    }
+    //**********************************************************/
+
+    /*
+     * Set how close the win rates of the top moves have to be to extend the search,
+     * zero never extends it.
+     */
+    public void setCloseMargin(double closeMargin){
+        this.closeMargin = Math.max(0, closeMargin);
+    }
+    //**********************************************************/
+
+    /*
+     * Cap the processor time of all searches of a game, in milliseconds, zero for no cap.
+     */
+    public void setGameCpuCap(long millis){
+        gameCpuCapNanos = Math.max(0, millis) * 1_000_000L;
+    }
+    //**********************************************************/
+
+    /*
+     * Set the most moves the rest of the processor time cap is shared among.
+     */
+    public void setExpectedMoves(int expectedMoves){
+        this.expectedMoves = Math.max(1, expectedMoves);
+    }
+    //**********************************************************/
+
+    /*
+     * Start a new game, the processor time spent so far is forgotten.
+     */
+    public void newGame(){
+        gameCpuNanos = 0;
+    }
+    //**********************************************************/
+
+    /*
+     * Add the processor time of a search to the present game.
+     */
+    public void record(long cpuNanos){
+        gameCpuNanos += Math.max(0, cpuNanos);
+    }
+    //**********************************************************/
+
+    /*
+     * Get the processor time the searches of the present game took, in nanoseconds.
+     */
+    public long getGameCpuNanos(){
+        return gameCpuNanos;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the simulations planned for a move with the given legal moves and open
+     * threats of both parties.
+     */
+    public int plan(int legalMoves, int openThreats){
+        double planned = (double) playoutsPerMove * legalMoves * (1 + threatWeight * openThreats);
+        return (int) Math.max(minPlayouts, Math.min(maxPlayouts, planned));
+    }
+    //**********************************************************/
+
+    /*
+     * Return the simulations to add to a search which ran the given number, if the win
+     * rates of its top moves are the given margin apart, 0 to end the search. The margin
+     * is negative when the move to play does not have the best win rate.
+     */
+    public int extension(int spent, double margin){
+        if (closeMargin == 0 || margin >= closeMargin || spent >= maxPlayouts) {
+            return 0;
+        }
+        return Math.min(maxPlayouts - spent, Math.max(minPlayouts, spent / 2));
+    }
+    //**********************************************************/
+
+    /*
+     * Return the processor time a move with the given legal moves may take, its share
+     * of what is left of the cap, 0 if the game has no cap.
+     */
+    public long moveCpuNanos(int legalMoves){
+        if (gameCpuCapNanos == 0) {
+            return 0;
+        }
+        int movesLeft = Math.max(1, Math.min(expectedMoves, (legalMoves + 1) / 2)); // the computer makes every other move
+        return Math.max(MIN_MOVE_NANOS, (gameCpuCapNanos - gameCpuNanos) / movesLeft);
+    }
+    //**********************************************************/
+}
@@ -165,7 +165,15 @@ public class Button implements Game{
      * Set UCT score value.
      */
     public void setUCTScore(double nodeWinNum, double nodeVisitNum, double totalSimulationNum){
-        this.uctScore = (nodeWinNum / nodeVisitNum) + Math.sqrt(2.5 * Math.log(totalSimulationNum) / nodeVisitNum) ;
+        this.uctScore = computeUCTScore(nodeWinNum, nodeVisitNum, totalSimulationNum);
+    }
+    //**********************************************************/
+
+    /* 
+     * Compute a UCT score value without storing it.
+     */
+    public static double computeUCTScore(double nodeWinNum, double nodeVisitNum, double totalSimulationNum){
+        return (nodeWinNum / nodeVisitNum) + Math.sqrt(2.5 * Math.log(totalSimulationNum) / nodeVisitNum) ;
     }
     //**********************************************************/
 
@@ -0,0 +1,142 @@
+//**********************************************************/
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+//**********************************************************/
+
+
+public class Calibration implements Game{
+
+    //* Fields
+    //**********************************************************/
+    // Measures how many playouts per second this host runs, so that a latency target can
+    // be turned into a simulation budget. The playouts start from a fixed opening, the
+    // center button and the one to its right, and draw their moves from a fixed seed, so
+    // every host runs the same games. A short warmup lets the JIT compile the loop, then
+    // the playouts are timed. Both are bounded by the clock, so a calibration takes about
+    // WARMUP_NANOS + MEASURE_NANOS on any host. The result is measured once per size and
+    // win length, and shared for the rest of the process.
+    //**********************************************************/
+    private static final ConcurrentHashMap<Integer, Calibration> CALIBRATIONS = new ConcurrentHashMap<>();
+    private static final long SEED = 20200424L; // the moves of the calibration playouts derive from this seed
+    private static final long WARMUP_NANOS = 30_000_000L; // playouts run before timing
+    private static final long MEASURE_NANOS = 60_000_000L; // how long the playouts are timed
+    private static final int CLOCK_CHECK_INTERVAL = 16; // playouts between two looks at the clock
+
+    private final int size; // the board is size x size buttons
+    private final int winLength; // the markers in a row needed to win
+    private final double playoutsPerSecond; // the measured playout rate of one thread
+    private final long calibrationNanos; // how long the calibration took, warmup included
+    //**********************************************************/
+
+    //* Calibration constructor, runs the measurement
+    private Calibration(int size, int winLength){
+        this.size = size;
+        this.winLength = winLength;
+        long start = System.nanoTime();
+        State state = new LineCountState(size, winLength);
+        state.createButtons();
+        int center = size / 2;
+        state.setMoveNumber(1);
+        state.recordPlayData(center, center, Game.X);
+        state.setClickedButton(center, center, Game.X);
+        if (size > 1) {
+            int right = center + 1 < size ? center + 1 : center - 1;
+            state.setMoveNumber(2);
+            state.recordPlayData(center, right, Game.O);
+            state.setClickedButton(center, right, Game.O);
+        }
+        MonteCarloSearch rollout = new MonteCarloSearch(state, 0, new SplittableRandom(SEED));
+        int altNum = state.totalMoveNumber;
+        int mark = state.getJournalSize();
+        runPlayouts(rollout, state, altNum, mark, start + WARMUP_NANOS);
+        long measureStart = System.nanoTime();
+        long playouts = runPlayouts(rollout, state, altNum, mark, measureStart + MEASURE_NANOS);
+        long measureEnd = System.nanoTime();
+        playoutsPerSecond = playouts * 1e9 / Math.max(1, measureEnd - measureStart);
+        calibrationNanos = measureEnd - start;
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Return the calibration of a board of the given size and win length, measured on the
+     * first call and shared after that.
+     */
+    static Calibration of(int size, int winLength){
+        if (size < 1 || winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("A win length of " + winLength + " does not fit a board of size " + size + ".");
+        }
+        return CALIBRATIONS.computeIfAbsent(size * 64 + winLength, key -> new Calibration(size, winLength));
+    }
+    //**********************************************************/
+
+    /*
+     * Run playouts from the opening until the deadline, and return how many were run.
+     */
+    private static long runPlayouts(MonteCarloSearch rollout, State state, int altNum, int mark, long deadline){
+        long playouts = 0;
+        if (state.isPresentMoveTerminal()) {
+            return 0; // a board too small for the opening
+        }
+        do {
+            for (int i = 0; i < CLOCK_CHECK_INTERVAL; i++) {
+                rollout.playOut(altNum);
+                state.undoTo(mark);
+            }
+            playouts += CLOCK_CHECK_INTERVAL;
+        } while (System.nanoTime() < deadline);
+        return playouts;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the simulations a search on the given number of threads can run within the
+     * latency target, in milliseconds. The playouts of the opening are the longest of a
+     * game, so later moves finish sooner.
+     */
+    public int playoutBudget(long latencyMillis, int threads){
+        double playouts = playoutsPerSecond * latencyMillis / 1000.0 * Math.max(1, threads);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, playouts));
+    }
+    //**********************************************************/
+
+    /*
+     * Get the measured playouts per second of one thread.
+     */
+    public double getPlayoutsPerSecond(){
+        return playoutsPerSecond;
+    }
+    //**********************************************************/
+
+    /*
+     * Get how long the calibration took, in nanoseconds.
+     */
+    public long getCalibrationNanos(){
+        return calibrationNanos;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the board size.
+     */
+    public int getSize(){
+        return size;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the markers in a row needed to win.
+     */
+    public int getWinLength(){
+        return winLength;
+    }
+    //**********************************************************/
+
+    @Override
+    public String toString(){
+        return size + "x" + size + " k=" + winLength + " playouts/s=" + Math.round(playoutsPerSecond)
+            + " ms=" + calibrationNanos / 1_000_000;
+    }
+    //**********************************************************/
+}
@@ -0,0 +1,380 @@
+//**********************************************************/
+import java.util.ArrayList;
+import java.util.List;
+//**********************************************************/
+
+
+public class Engine implements Game{
+
+    //* Fields
+    //**********************************************************/
+    // The engine needs no display. It keeps its own state and monte carlo search, and
+    // brings the state up to date with every position it is asked about, so the
+    // statistics of earlier searches carry over from one move to the next.
+    //**********************************************************/
+    private final int size; // the board is size x size buttons
+    private final int winLength; // the markers in a row needed to win
+    private final State state; // the state of the last searched position
+    private final MonteCarloSearch mSearch; // the search behind the engine
+    private final Solver solver; // solves small boards exactly, null for boards too large for it
+    private int solverLimit; // positions with at most this many empty buttons go to the solver
+    private boolean perfectPlay; // true if 3x3 positions are read from the perfect play table
+    private BudgetPolicy budgetPolicy; // plans the simulations of every move, null for a fixed number
+    private long latencyMillis; // the time a move should take, sizes the simulation budget, 0 for none
+    private Calibration calibration; // the playout rate of this host, null until a latency target is set
+    private boolean pondering; // true if the engine searches while the player decides
+    //**********************************************************/
+
+    //* Engine constructor, a full row, column or diagonal wins
+    Engine(int size){
+        this(size, size);
+    }
+    //**********************************************************/
+
+    //* Engine constructor, winLength markers in a row win, 15 and 5 play gomoku
+    Engine(int size, int winLength){
+        if (size < 1 || size > Zobrist.MAX_SIZE) {
+            throw new IllegalArgumentException("The engine plays boards of size 1 to " + Zobrist.MAX_SIZE + ".");
+        }
+        this.size = size;
+        this.winLength = winLength;
+        state = new LineCountState(size, winLength);
+        state.createButtons();
+        mSearch = new MonteCarloSearch(size, winLength);
+        mSearch.setState(state);
+        solver = size <= Solver.MAX_SIZE ? new Solver(size, winLength) : null;
+        solverLimit = size <= 4 ? size * size : 0; // a whole 4x4 game solves in tens of milliseconds
+        perfectPlay = isPerfectPlayGame();
+        setLatencyTarget(Long.getLong("tictactoe.latency", 0)); // set with -Dtictactoe.latency=<ms>
+        setPondering(Boolean.getBoolean("tictactoe.ponder")); // set with -Dtictactoe.ponder=true
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Set how many threads share the simulations of a move.
+     */
+    public void setWorkerCount(int workerCount){
+        mSearch.setWorkerCount(workerCount);
+        if (latencyMillis > 0) { // more threads run more simulations in the same time
+            setLatencyTarget(latencyMillis);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Switch between the flat button statistics and a shared search tree.
+     */
+    public void setTreeParallel(boolean treeParallel){
+        mSearch.setTreeParallel(treeParallel);
+    }
+    //**********************************************************/
+
+    /*
+     * Blend all moves as first statistics into the tree search, zero turns it off.
+     */
+    public void setRaveEquivalence(int equivalence){
+        mSearch.setRaveEquivalence(equivalence);
+    }
+    //**********************************************************/
+
+    /*
+     * Stop a search once its move is settled at the given confidence, for example 0.99.
+     * Zero, the default, runs the whole budget of every move.
+     */
+    public void setStopConfidence(double confidence){
+        mSearch.setStopConfidence(confidence);
+    }
+    //**********************************************************/
+
+    /*
+     * Let a policy plan the simulations of every move from the position, null goes back
+     * to the fixed simulation number. The policy keeps the processor time of the game.
+     */
+    public void setBudgetPolicy(BudgetPolicy budgetPolicy){
+        this.budgetPolicy = budgetPolicy;
+        mSearch.setBudgetPolicy(budgetPolicy);
+    }
+    //**********************************************************/
+
+    /*
+     * Let the engine search the position the player has to answer, see ponder. The
+     * pondered simulations are kept in the search tree, so pondering switches the tree
+     * search on.
+     */
+    public void setPondering(boolean pondering){
+        this.pondering = pondering;
+        if (pondering && !mSearch.isTreeParallel()) {
+            mSearch.setTreeParallel(true);
+        }
+        mSearch.setPondering(pondering);
+    }
+    //**********************************************************/
+
+    /*
+     * Search the position on the calling thread, while the player to move decides, until
+     * stopPondering is called. The search of the reply then starts from the pondered
+     * subtree of the move played, and returns at once if it holds the budget already.
+     * Nothing happens without pondering, or if the engine answers the next move without
+     * searching.
+     */
+    public void ponder(Position position){
+        if (position.getSize() != size) {
+            throw new IllegalArgumentException("The engine plays on a board of size " + size + ".");
+        }
+        if (!pondering || perfectPlay || size * size - position.getMoveNumber() - 1 <= solverLimit) {
+            return; // the reply comes from the table or the solver
+        }
+        syncTo(position);
+        if (state.isPresentMoveTerminal() || state.isDeadDraw()) {
+            return;
+        }
+        mSearch.setAltNum(position.getMoveNumber());
+        mSearch.ponder();
+    }
+    //**********************************************************/
+
+    /*
+     * Stop the running ponder from any thread, and any ponder started before the next
+     * search.
+     */
+    public void stopPondering(){
+        mSearch.stopPondering();
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations the last ponder ran.
+     */
+    public int getPonderedSimulations(){
+        return mSearch.getPonderedSimulations();
+    }
+    //**********************************************************/
+
+    /*
+     * Give every move a time budget in milliseconds, zero turns it off.
+     */
+    public void setTimeBudget(long millis){
+        mSearch.setTimeBudget(millis);
+    }
+    //**********************************************************/
+
+    /*
+     * Give every move a simulation budget, zero turns it off. The budget takes
+     * precedence over the one a latency target sizes.
+     */
+    public void setNodeBudget(int nodeBudget){
+        mSearch.setNodeBudget(nodeBudget);
+    }
+    //**********************************************************/
+
+    /*
+     * Size the simulation budget of every move so that a search takes about the given
+     * milliseconds on this host, zero turns it off. The first target of a board size
+     * calibrates the host, in about a tenth of a second, later engines reuse the result.
+     * A budget set with setNodeBudget takes precedence over the sized one.
+     */
+    public void setLatencyTarget(long millis){
+        latencyMillis = Math.max(0, millis);
+        if (latencyMillis == 0) {
+            mSearch.setLatencyBudget(0);
+            return;
+        }
+        calibration = Calibration.of(size, winLength);
+        mSearch.setLatencyBudget(calibration.playoutBudget(latencyMillis, mSearch.getWorkerCount()));
+    }
+    //**********************************************************/
+
+    /*
+     * Get the calibration the simulation budget was sized with, null if no latency
+     * target was set.
+     */
+    public Calibration getCalibration(){
+        return calibration;
+    }
+    //**********************************************************/
+
+    /*
+     * Let the exact solver answer positions with at most the given number of empty
+     * buttons, zero leaves every position to the monte carlo search.
+     */
+    public void setSolverLimit(int emptyButtons){
+        solverLimit = solver == null ? 0 : Math.max(0, emptyButtons);
+    }
+    //**********************************************************/
+
+    /*
+     * Let 3x3 positions be answered from the perfect play table, false leaves them to
+     * the solver and the monte carlo search. Other games have no table.
+     */
+    public void setPerfectPlay(boolean perfectPlay){
+        this.perfectPlay = perfectPlay && isPerfectPlayGame();
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the monte carlo search answers some positions of the game, false
+     * if the perfect play table or the solver answers all of them.
+     */
+    public boolean usesMonteCarloSearch(){
+        return !perfectPlay && size * size > solverLimit;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the perfect play table covers the game, 3x3 with three in a row.
+     */
+    private boolean isPerfectPlayGame(){
+        return size == PerfectPlayTable.SIZE && winLength == PerfectPlayTable.SIZE;
+    }
+    //**********************************************************/
+
+    /*
+     * Fix the random seed of the search.
+     */
+    public void setSeed(long seed){
+        mSearch.setSeed(seed);
+    }
+    //**********************************************************/
+
+    /*
+     * Stop the running search from any thread. A cancelled engine answers every search
+     * at once, with a result marked as cancelled, until the next new game.
+     */
+    public void cancel(){
+        mSearch.cancel();
+    }
+    //**********************************************************/
+
+    /*
+     * Forget the previous game, the next search starts from an empty state.
+     */
+    public void newGame(){
+        mSearch.newGame();
+        if (budgetPolicy != null) {
+            budgetPolicy.newGame();
+        }
+        clearState();
+    }
+    //**********************************************************/
+
+    /*
+     * Clear the state and the scores gathered in it.
+     */
+    private void clearState(){
+        state.clearPlayData();
+        state.clearClickedInfo();
+        state.clearWinScores();
+    }
+    //**********************************************************/
+
+    /*
+     * Search the position for the party to move, and return the chosen move with
+     * its statistics.
+     */
+    public SearchResult search(Position position){
+        if (position.getSize() != size) {
+            throw new IllegalArgumentException("The engine plays on a board of size " + size + ".");
+        }
+        mSearch.clearPonderStop(); // ponders started after this search run again
+        if (perfectPlay) {
+            return PerfectPlayTable.shared().lookup(position);
+        }
+        if (size * size - position.getMoveNumber() <= solverLimit) {
+            return solver.solve(position); // the state catches up with the next search
+        }
+        long start = System.nanoTime();
+        syncTo(position);
+        if (state.isPresentMoveTerminal()) {
+            throw new IllegalArgumentException("The game of the position is already over.");
+        }
+        if (state.isDeadDraw()) { // no line can be completed, every move draws
+            int move = 0;
+            while (state.getCell(move) != Game.EmptyCell) {
+                move++;
+            }
+            return new SearchResult(move / size, move % size, position.getSideToMove(), 0, 0, 0,
+                System.nanoTime() - start);
+        }
+
+        String computerMarker = position.getSideToMove();
+        mSearch.setCompMarker(computerMarker);
+        mSearch.setPlayerMarker(computerMarker.equals(Game.X) ? Game.O : Game.X);
+        mSearch.setAltNum(position.getMoveNumber());
+        mSearch.selectBestIndex();
+
+        boolean immediate = mSearch.getImmediateStatus();
+        int move;
+        if (immediate) { // a game ending move, or the move which stops the opponent from ending the game
+            move = mSearch.getImmRow() * size + mSearch.getImmCol();
+            mSearch.setImmediateExists(false);
+        } else {
+            move = mSearch.getIndexBest();
+        }
+        int latencyBudget = mSearch.getLatencyBudget();
+        double playoutsPerSecond = latencyBudget > 0 ? calibration.getPlayoutsPerSecond() : 0;
+        int proven = mSearch.getMoveProven(move);
+        if (!immediate && proven != NodeArena.UNPROVEN) { // the tree search proved the move
+            return new SearchResult(move / size, move % size, computerMarker, proven - NodeArena.PROVEN_DRAW, -1, 0,
+                mSearch.getMoveVisits(move), mSearch.getMoveWinScore(move), mSearch.getCompletedSimulations(),
+                mSearch.getReusedSimulations(), mSearch.getSavedSimulations(), System.nanoTime() - start,
+                mSearch.getCpuNanos(), mSearch.isCancelled(), playoutsPerSecond, latencyBudget);
+        }
+        return new SearchResult(move / size, move % size, computerMarker, immediate,
+            mSearch.getMoveVisits(move), mSearch.getMoveWinScore(move), mSearch.getCompletedSimulations(),
+            mSearch.getReusedSimulations(), mSearch.getSavedSimulations(), System.nanoTime() - start,
+            mSearch.getCpuNanos(), mSearch.isCancelled(), playoutsPerSecond, latencyBudget);
+    }
+    //**********************************************************/
+
+    /*
+     * Bring the state up to date with the position. When the position follows from the
+     * state, only the new markers are recorded, alternating between the parties. Any
+     * other position is recorded from an empty state.
+     */
+    private void syncTo(Position position){
+        List<Integer> xMoves = new ArrayList<>();
+        List<Integer> oMoves = new ArrayList<>();
+        boolean follows = true;
+        for (int cell = 0; cell < size * size; cell++) {
+            String known = state.buttonList.get(cell).getMarker();
+            String marker = position.getCell(cell);
+            if (known.equals(Game.Empty)) {
+                if (marker.equals(Game.X)) {
+                    xMoves.add(cell);
+                } else if (marker.equals(Game.O)) {
+                    oMoves.add(cell);
+                }
+            } else if (!known.equals(marker)) {
+                follows = false;
+            }
+        }
+        boolean xNext = state.totalMoveNumber % 2 == 0;
+        int nextCount = xNext ? xMoves.size() : oMoves.size();
+        int otherCount = xNext ? oMoves.size() : xMoves.size();
+        if (!follows || (nextCount != otherCount && nextCount != otherCount + 1)) {
+            clearState();
+            xMoves.clear();
+            oMoves.clear();
+            for (int cell = 0; cell < size * size; cell++) {
+                if (position.getCell(cell).equals(Game.X)) {
+                    xMoves.add(cell);
+                } else if (position.getCell(cell).equals(Game.O)) {
+                    oMoves.add(cell);
+                }
+            }
+        }
+        while (!xMoves.isEmpty() || !oMoves.isEmpty()) {
+            boolean xTurn = state.totalMoveNumber % 2 == 0;
+            int cell = xTurn ? xMoves.remove(0) : oMoves.remove(0);
+            int row = cell / size;
+            int col = cell % size;
+            String marker = xTurn ? Game.X : Game.O;
+            state.setMoveNumber(state.totalMoveNumber + 1);
+            state.recordPlayData(row, col, marker);
+            state.setClickedButton(row, col, marker);
+        }
+    }
+    //**********************************************************/
+}
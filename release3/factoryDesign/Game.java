@@ -1,7 +1,11 @@
 public interface Game {
     int size = 3;
+    int winLength = size; // the markers in a row needed to win
     String X = "X";
     String O = "O";
     String Empty = " ";
+    byte EmptyCell = 0; // the markers as bytes, used by the simulation hot paths
+    byte XCell = 1;
+    byte OCell = 2;
 
 }
\ No newline at end of file
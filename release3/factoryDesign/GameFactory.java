@@ -13,8 +13,17 @@ public class GameFactory {
             case stateObject:
                 gameObject = new State(Game.size);
                 break;
+            case lineCountStateObject:
+                gameObject = new LineCountState(Game.size, Game.winLength);
+                break;
             case mSearchObject:
-                gameObject = new MonteCarloSearch(Game.size);   
+                gameObject = new MonteCarloSearch(Game.size, Game.winLength);   
+                break;
+            case engineObject:
+                gameObject = new Engine(Game.size, Game.winLength);
+                break;
+            case solverObject:
+                gameObject = new Solver(Game.size, Game.winLength);
                 break;
             case userInteractionObject:
                 gameObject = new UserInteraction();
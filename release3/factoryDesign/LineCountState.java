@@ -0,0 +1,439 @@
+//**********************************************************/
+import java.util.Arrays;
+//**********************************************************/
+
+
+public class LineCountState extends State{
+
+    //* Fields
+    //**********************************************************/
+    // The board itself is the cells array of State. On top of it this state counts the
+    // markers of each party on every line a party can win with, so that a move or an
+    // undo only touches the lines through its button, and a win, a dead draw or a
+    // threat is known without a scan.
+    //**********************************************************/
+    private LineTable lines; // every line a party can win with, shared by all states of the same rules
+
+    private int[] xCounts; // how many "X" markers each line holds
+    private int[] oCounts; // how many "O" markers each line holds
+    private boolean lineComplete; // true once a line is filled with one marker
+    private int xLiveLines; // lines without an "O", which "X" can still complete
+    private int oLiveLines; // lines without an "X", which "O" can still complete
+    private static final int LINE_WON = 1; // journal flag, a line was complete before the move
+
+    // the threat index, every empty button which completes a line for a marker, kept up
+    // to date by every move and undo. The arrays are indexed by byte marker, 0 is unused.
+    private int[][] threatCounts; // how many lines each button completes for the marker
+    private int[][] threatCells; // the buttons with a threat count above 0, dense and in no particular order
+    private int[][] threatPosition; // where each button sits in threatCells
+    private int[] threatSize; // how many buttons threaten a win for the marker
+
+    private int[] storedXCounts; // state storage quantities
+    private int[] storedOCounts;
+    private int storedXLiveLines;
+    private int storedOLiveLines;
+    private int[][] storedThreatCounts;
+    private int[][] storedThreatCells;
+    private int[][] storedThreatPosition;
+    private int[] storedThreatSize;
+    //**********************************************************/
+
+    //* Line count state constructor, a full row, column or diagonal wins
+    LineCountState(int size){
+        this(size, size);
+    }
+    //**********************************************************/
+
+    //* Line count state constructor, winLength markers in a row win
+    LineCountState(int size, int winLength){
+        super(size, winLength);
+        lines = LineTable.of(size, winLength);
+        xCounts = new int[lines.getLineCount()];
+        oCounts = new int[lines.getLineCount()];
+        storedXCounts = new int[lines.getLineCount()];
+        storedOCounts = new int[lines.getLineCount()];
+        threatCounts = new int[3][size * size];
+        threatCells = new int[3][size * size];
+        threatPosition = new int[3][size * size];
+        threatSize = new int[3];
+        storedThreatCounts = new int[3][size * size];
+        storedThreatCells = new int[3][size * size];
+        storedThreatPosition = new int[3][size * size];
+        storedThreatSize = new int[3];
+        xLiveLines = lines.getLineCount();
+        oLiveLines = lines.getLineCount();
+        resetThreats();
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Return the empty button of a line, -1 if the line is full.
+     */
+    private int emptyCell(int line){
+        return emptyCellBesides(line, -1);
+    }
+    //**********************************************************/
+
+    /*
+     * Return an empty button of a line other than the given one, -1 if there is none.
+     */
+    private int emptyCellBesides(int line, int other){
+        for (int cell : lines.getLineCells(line)) {
+            if (cells[cell] == Game.EmptyCell && cell != other) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+    //**********************************************************/
+
+    /*
+     * Count one more line the button completes for the marker.
+     */
+    private void addThreat(byte mark, int cell){
+        if (threatCounts[mark][cell]++ == 0) {
+            threatPosition[mark][cell] = threatSize[mark];
+            threatCells[mark][threatSize[mark]++] = cell;
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Count one line less the button completes for the marker, the last entry of the
+     * dense list takes the place of a button which no longer threatens.
+     */
+    private void removeThreat(byte mark, int cell){
+        if (--threatCounts[mark][cell] == 0) {
+            int position = threatPosition[mark][cell];
+            int last = threatCells[mark][--threatSize[mark]];
+            threatCells[mark][position] = last;
+            threatPosition[mark][last] = position;
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Build the threat index from the line counts.
+     */
+    private void resetThreats(){
+        for (int mark = Game.XCell; mark <= Game.OCell; mark++) {
+            Arrays.fill(threatCounts[mark], 0);
+            threatSize[mark] = 0;
+        }
+        for (int line = 0; line < lines.getLineCount(); line++) {
+            if (xCounts[line] == winLength - 1 && oCounts[line] == 0) {
+                addThreat(Game.XCell, emptyCell(line));
+            }
+            if (oCounts[line] == winLength - 1 && xCounts[line] == 0) {
+                addThreat(Game.OCell, emptyCell(line));
+            }
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return a button which completes a line for the marker, -1 if there is none. The
+     * index answers at once, for every line of the board.
+     */
+    @Override
+    public int threatCell(byte mark){
+        return threatSize[mark] == 0 ? -1 : threatCells[mark][0];
+    }
+    //**********************************************************/
+
+    /*
+     * Return the number of lines the marker can turn into a threat with one more move,
+     * read from the line counts.
+     */
+    @Override
+    public int openThreatCount(byte mark){
+        int[] mine = mark == Game.XCell ? xCounts : oCounts;
+        int[] theirs = mark == Game.XCell ? oCounts : xCounts;
+        int count = 0;
+        for (int line = 0; line < mine.length; line++) {
+            if (mine[line] == winLength - 2 && theirs[line] == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the empty button of a line which one party can complete with a single move,
+     * -1 if no such button exists.
+     */
+    private int completingCell(int line){
+        int xCount = xCounts[line];
+        int oCount = oCounts[line];
+        if ((xCount == winLength - 1 && oCount == 0) || (oCount == winLength - 1 && xCount == 0)) {
+            return emptyCell(line);
+        }
+        return -1;
+    }
+    //**********************************************************/
+
+    /*
+     * Record a move given by its button index and byte marker, the markers and the
+     * locations they occupy.
+     */
+    @Override
+    public void recordMove(int cell, byte mark){
+        Button moved = buttonList.get(cell);
+        moved.setVisitStatus(true);
+        moved.setMarker(MARKERS[mark]);
+        journalMove(cell, mark, lineComplete ? LINE_WON : 0);
+        int[] counts = mark == Game.XCell ? xCounts : oCounts;
+        int[] otherCounts = mark == Game.XCell ? oCounts : xCounts;
+        byte other = mark == Game.XCell ? Game.OCell : Game.XCell;
+        for (int line : lines.getCellLines(cell)) { // a win needs a full line through the new marker
+            int mine = counts[line];
+            int theirs = otherCounts[line];
+            if (mine == 0) { // the first marker on the line, the other party can no longer complete it
+                if (mark == Game.XCell) {
+                    oLiveLines--;
+                } else {
+                    xLiveLines--;
+                }
+            }
+            if (theirs == winLength - 1 && mine == 0) {
+                removeThreat(other, cell); // the move blocks the line of the other party
+            }
+            if (mine == winLength - 1 && theirs == 0) {
+                removeThreat(mark, cell); // the move completes the line
+            }
+            counts[line] = ++mine;
+            if (mine == winLength) {
+                winMarker = MARKERS[mark];
+                lineComplete = true;
+            } else if (mine == winLength - 1 && theirs == 0) {
+                addThreat(mark, emptyCell(line)); // one button is left to complete the line
+            }
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Take back a single recorded move, clearing its line counts and the threats it
+     * made or removed.
+     */
+    @Override
+    protected void undoMove(int i, int j, byte mark, int flags){
+        int cell = i * size + j;
+        int[] counts = mark == Game.XCell ? xCounts : oCounts;
+        int[] otherCounts = mark == Game.XCell ? oCounts : xCounts;
+        byte other = mark == Game.XCell ? Game.OCell : Game.XCell;
+        for (int line : lines.getCellLines(cell)) { // the button is empty again already
+            int mine = counts[line];
+            int theirs = otherCounts[line];
+            if (mine == winLength - 1 && theirs == 0) {
+                removeThreat(mark, emptyCellBesides(line, cell));
+            }
+            counts[line] = --mine;
+            if (mine == winLength - 1 && theirs == 0) {
+                addThreat(mark, cell);
+            }
+            if (mine == 0) {
+                if (mark == Game.XCell) {
+                    oLiveLines++;
+                } else {
+                    xLiveLines++;
+                }
+                if (theirs == winLength - 1) {
+                    addThreat(other, cell);
+                }
+            }
+        }
+        button[i][j].setVisitStatus(false);
+        button[i][j].setMarker(Game.Empty);
+        lineComplete = (flags & LINE_WON) != 0;
+        if (!lineComplete) {
+            winMarker = Game.Empty;
+        }
+        isDraw = false;
+        --totalMoveNumber;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the present move is a game ending move
+     */
+    @Override
+    public boolean isPresentMoveTerminal(){
+        if (lineComplete) {
+            return true;
+        }
+        if (totalMoveNumber == size * size) {
+            isDraw = true;
+            return true;
+        }
+        return false;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if every line holds both markers, so that neither party can win any
+     * more, and mark the state as a draw. The board need not be full.
+     */
+    @Override
+    public boolean isDeadDraw(){
+        if (!lineComplete && xLiveLines == 0 && oLiveLines == 0) {
+            isDraw = true;
+            return true;
+        }
+        return false;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if a line through the given button can be completed with the next move.
+     */
+    @Override
+    public boolean isNextMoveTerminal(int i, int j){
+        for (int line : lines.getCellLines(i * size + j)) {
+            int cell = completingCell(line);
+            if (cell != -1) {
+                setTerminalMove(cell / size, cell % size);
+                return true;
+            }
+        }
+        return false;
+    }
+    //**********************************************************/
+
+    /*
+     * Add the game ending moves of the lines through the given button to the
+     * immediate terminal move list.
+     */
+    @Override
+    public void immedTerminalMoves(int i, int j){
+        for (int line : lines.getCellLines(i * size + j)) {
+            int cell = completingCell(line);
+            if (cell != -1) {
+                addTerminalMove(button[cell / size][cell % size]);
+            }
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Store the present state as it exists on the board.
+     */
+    @Override
+    public void storePresentState(){
+        storedTotalMoveNum = totalMoveNumber;
+        System.arraycopy(xCounts, 0, storedXCounts, 0, xCounts.length);
+        System.arraycopy(oCounts, 0, storedOCounts, 0, oCounts.length);
+        storedXLiveLines = xLiveLines;
+        storedOLiveLines = oLiveLines;
+        copyThreats(threatCounts, threatCells, threatPosition, threatSize,
+            storedThreatCounts, storedThreatCells, storedThreatPosition, storedThreatSize);
+        System.arraycopy(cells, 0, storedCells, 0, cells.length);
+        storedJournalSize = journalSize;
+        storeHashes();
+    }
+    //**********************************************************/
+
+    /*
+     * Clear all play data
+     */
+    @Override
+    public void clearPlayData(){
+        Arrays.fill(xCounts, 0);
+        Arrays.fill(oCounts, 0);
+        xLiveLines = lines.getLineCount();
+        oLiveLines = lines.getLineCount();
+        Arrays.fill(cells, Game.EmptyCell);
+        resetThreats();
+        lineComplete = false;
+        isDraw = false;
+        winMarker = Game.Empty;
+        totalMoveNumber = 0;
+        immedTerminalMovList.clear();
+        journalSize = 0;
+        resetHashes();
+        for (Button buttons : buttonList) {
+            buttons.setVisitStatus(false);
+            buttons.setMarker(Game.Empty);
+        }
+        resetEmptyCells();
+    }
+    //**********************************************************/
+
+    /*
+     * Restore the original state, the buttons follow the stored cells.
+     */
+    @Override
+    public void restoreOriginalState(){
+        totalMoveNumber = storedTotalMoveNum;
+        System.arraycopy(storedXCounts, 0, xCounts, 0, xCounts.length);
+        System.arraycopy(storedOCounts, 0, oCounts, 0, oCounts.length);
+        xLiveLines = storedXLiveLines;
+        oLiveLines = storedOLiveLines;
+        copyThreats(storedThreatCounts, storedThreatCells, storedThreatPosition, storedThreatSize,
+            threatCounts, threatCells, threatPosition, threatSize);
+        System.arraycopy(storedCells, 0, cells, 0, cells.length);
+        journalSize = storedJournalSize;
+        restoreHashes();
+        for (int cell = 0; cell < size * size; cell++) {
+            if (cells[cell] != Game.EmptyCell) {
+                buttonList.get(cell).setVisitStatus(true);
+                buttonList.get(cell).setMarker(MARKERS[cells[cell]]);
+            }
+        }
+        rebuildEmptyCells();
+    }
+    //**********************************************************/
+
+    /*
+     * Clear all stored data
+     */
+    @Override
+    public void clearStoredData(){
+        storedTotalMoveNum = 0;
+        Arrays.fill(storedXCounts, 0);
+        Arrays.fill(storedOCounts, 0);
+        storedXLiveLines = lines.getLineCount();
+        storedOLiveLines = lines.getLineCount();
+        for (int[] counts : storedThreatCounts) {
+            Arrays.fill(counts, 0);
+        }
+        Arrays.fill(storedThreatSize, 0);
+    }
+    //**********************************************************/
+
+    /*
+     * Copy a threat index, only the used part of the dense lists is copied.
+     */
+    private static void copyThreats(int[][] counts, int[][] threats, int[][] positions, int[] sizes,
+                                    int[][] toCounts, int[][] toThreats, int[][] toPositions, int[] toSizes){
+        for (int mark = Game.XCell; mark <= Game.OCell; mark++) {
+            System.arraycopy(counts[mark], 0, toCounts[mark], 0, counts[mark].length);
+            System.arraycopy(threats[mark], 0, toThreats[mark], 0, sizes[mark]);
+            System.arraycopy(positions[mark], 0, toPositions[mark], 0, positions[mark].length);
+            toSizes[mark] = sizes[mark];
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Create an independent copy of this state.
+     */
+    @Override
+    public State copyState(){
+        LineCountState copy = new LineCountState(size, winLength);
+        copy.createButtons();
+        copyInto(copy);
+        System.arraycopy(xCounts, 0, copy.xCounts, 0, xCounts.length);
+        System.arraycopy(oCounts, 0, copy.oCounts, 0, oCounts.length);
+        copy.xLiveLines = xLiveLines;
+        copy.oLiveLines = oLiveLines;
+        copyThreats(threatCounts, threatCells, threatPosition, threatSize,
+            copy.threatCounts, copy.threatCells, copy.threatPosition, copy.threatSize);
+        copy.lineComplete = lineComplete;
+        return copy;
+    }
+    //**********************************************************/
+}
@@ -0,0 +1,129 @@
+//**********************************************************/
+import java.util.concurrent.ConcurrentHashMap;
+//**********************************************************/
+
+
+public class LineTable implements Game{
+
+    //* Fields
+    //**********************************************************/
+    // Every run of winLength buttons in a row, a column or a diagonal of a size x size
+    // board is a line, and a party wins by filling one. The lines are listed rows first,
+    // then columns, then the diagonals running down to the right and down to the left,
+    // so a board played to its full size keeps the line order of the original game.
+    // The tables are built once per size and win length, and shared read-only.
+    //**********************************************************/
+    private static final ConcurrentHashMap<Integer, LineTable> TABLES = new ConcurrentHashMap<>();
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}}; // row and column steps of each line kind
+
+    private final int size; // the board is size x size buttons
+    private final int winLength; // the markers in a row a party needs to win
+    private final int[][] lineCells; // the button indices of every line
+    private final int[][] cellLines; // the lines which pass through each button index
+    //**********************************************************/
+
+    //* Line table constructor
+    private LineTable(int size, int winLength){
+        this.size = size;
+        this.winLength = winLength;
+        int count = 0;
+        for (int[] step : DIRECTIONS) {
+            count += lineStarts(step).length;
+        }
+        lineCells = new int[count][];
+        int[] linesPerCell = new int[size * size];
+        int line = 0;
+        for (int[] step : DIRECTIONS) {
+            for (int start : lineStarts(step)) {
+                int[] cells = new int[winLength];
+                for (int t = 0; t < winLength; t++) {
+                    cells[t] = start + t * (step[0] * size + step[1]);
+                    linesPerCell[cells[t]]++;
+                }
+                lineCells[line++] = cells;
+            }
+        }
+        cellLines = new int[size * size][];
+        for (int cell = 0; cell < size * size; cell++) {
+            cellLines[cell] = new int[linesPerCell[cell]];
+            linesPerCell[cell] = 0;
+        }
+        for (line = 0; line < count; line++) {
+            for (int cell : lineCells[line]) {
+                cellLines[cell][linesPerCell[cell]++] = line;
+            }
+        }
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Return the line table of a board of the given size and win length.
+     */
+    static LineTable of(int size, int winLength){
+        if (size < 1 || winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("A win length of " + winLength + " does not fit a board of size " + size + ".");
+        }
+        return TABLES.computeIfAbsent(size * 64 + winLength, key -> new LineTable(size, winLength));
+    }
+    //**********************************************************/
+
+    /*
+     * Return the first button index of every line running in the given direction.
+     */
+    private int[] lineStarts(int[] step){
+        int rowStarts = step[0] == 0 ? size : size - winLength + 1;
+        int colStarts = step[1] == 0 ? size : size - winLength + 1;
+        int colOffset = step[1] < 0 ? winLength - 1 : 0; // lines running to the left start further right
+        int[] starts = new int[rowStarts * colStarts];
+        for (int i = 0; i < rowStarts; i++) {
+            for (int j = 0; j < colStarts; j++) {
+                starts[i * colStarts + j] = i * size + j + colOffset;
+            }
+        }
+        return starts;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the board size.
+     */
+    public int getSize(){
+        return size;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the markers in a row a party needs to win.
+     */
+    public int getWinLength(){
+        return winLength;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of lines.
+     */
+    public int getLineCount(){
+        return lineCells.length;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the button indices of a line. The array is shared and must not be changed.
+     */
+    public int[] getLineCells(int line){
+        return lineCells[line];
+    }
+    //**********************************************************/
+
+    /*
+     * Get the lines which pass through a button index. The array is shared and must
+     * not be changed.
+     */
+    public int[] getCellLines(int cell){
+        return cellLines[cell];
+    }
+    //**********************************************************/
+}
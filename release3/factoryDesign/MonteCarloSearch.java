@@ -1,40 +1,93 @@
+//**********************************************************/
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+//**********************************************************/
 
 public class MonteCarloSearch implements Game{
 
     //* Fields
     //**********************************************************/
     State state; // mSearch needs to know the state of the board
-    GameFactory gameFactory;
     private int numSimulations; // how many simulations per move to make
     private int altNum; // and the alternating number
     private int IndexBest; // the index of best possible move will be passed on to the board
-    private int randomPick; // the index of a random pick will be used in the simulation
-
-    private int simRow; // a row from a simulation
-    private int simCol; // a column from a simulation
-    private String simMarker; // a simulation marker
+    private int[] winScores; // the win scores of the buttons while a search runs, by button index
+    private int[] visitNumbers; // and their visit numbers
 
     private boolean immediateExists; // true if an immediate terminal move exists
     private int immRow; // the row of the immediate terminal move
     private int immCol; // the column of the immediate terminal move
 
-    private int compClickedRow; // if the computer selects a square, that square is unavailable
-    private int compClickedCol; // for the monte carlo analysis
-
     private int rewardVal; // reward for winning, given to winning squares
     private String computerMarker; // the marker symbol of the computer
     private String playerMarker; // the marker symbol of the player
+
+    private int workerCount; // how many workers share the simulations of a move
+    private SplittableRandom seedSource; // splits off the random generators of the workers
+    private SplittableRandom random; // the random generator used by the simulations, one per thread
+    private static ExecutorService workerPool; // threads shared by all root parallel searches
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean(); // reads the processor time of threads
+    private TreeSearch treeSearch; // a shared search tree, null unless tree parallel search is on
+    private int raveEquivalence; // handed to the search tree, 0 for plain UCT
+
+    static final int CLOCK_CHECK_INTERVAL = 64; // simulations between two looks at the clock
+    static final int MAX_PONDER_SIMULATIONS = 1 << 18; // the most simulations a ponder runs, bounds the tree it grows
+    private long timeBudgetNanos; // how long a move may take, 0 if the search is not timed
+    private int nodeBudget; // how many simulations a move may take, 0 to use numSimulations
+    private int latencyBudget; // the simulations a latency target allows a move, used without a node budget, 0 for none
+    private long deadline; // the System.nanoTime() at which the running search stops, 0 if none
+    private int completedSimulations; // how many simulations the last search ran
+    private int reusedSimulations; // simulations the last search kept from earlier moves
+    private int savedSimulations; // simulations of the budget the last search left unused, its move being settled
+    private double stopConfidence; // the confidence at which a settled search stops early, 0 (the default) to run the whole budget
+    private BudgetPolicy budgetPolicy; // plans the simulations of every move, null for the fixed simulation number
+    private int plannedSimulations; // the simulations the policy gave the running round, 0 without a policy
+    private long cpuNanos; // the processor time the last search took, on all its threads
+    private AtomicBoolean cancelled; // set to stop the running search, shared with the workers
+    private boolean pondering; // true if the search tree grows on the time of the player
+    private AtomicBoolean ponderStopped; // set to stop the running ponder, cleared by the next search
+    private int ponderedSimulations; // how many simulations the last ponder ran
     //**********************************************************/
 
-    //* Monte carlo search constructor
+    //* Monte carlo search constructor, a full row, column or diagonal wins
     MonteCarloSearch(int size){
-        //state = new State(size); // create a new state object
-        gameFactory = new GameFactory();
-        state = (State) gameFactory.getGameType(ObjectChoice.stateObject);
+        this(size, size);
+    }
+    //**********************************************************/
+
+    //* Monte carlo search constructor, winLength markers in a row win
+    MonteCarloSearch(int size, int winLength){
+        state = new LineCountState(size, winLength);
         numSimulations = 1500;  // set the simulation number to 1500 as default 
         IndexBest = 0;          // the best index set to 0, but will change
         immediateExists = false; // immediate exists is initially false
         rewardVal = 1; // the reward is +1 for winning
+        workerCount = 1; // simulations run on the calling thread by default
+        seedSource = new SplittableRandom();
+        random = seedSource.split();
+        cancelled = new AtomicBoolean();
+        ponderStopped = new AtomicBoolean();
+    }
+    //**********************************************************/
+
+    //* Worker constructor, a worker simulates on its own copy of the state
+    MonteCarloSearch(State state, int numSimulations, SplittableRandom random){
+        this.state = state;
+        this.numSimulations = numSimulations;
+        IndexBest = 0;
+        immediateExists = false;
+        rewardVal = 1;
+        workerCount = 1;
+        this.random = random;
+        cancelled = new AtomicBoolean();
     }
     //**********************************************************/
 
@@ -56,6 +109,279 @@ public class MonteCarloSearch implements Game{
     }
     //**********************************************************/
 
+    /*
+     * Set how many workers split the simulations of a move. Each worker simulates
+     * on its own copy of the state, and the scores are merged afterwards.
+     */
+    public void setWorkerCount(int workerCount){
+        this.workerCount = Math.max(1, workerCount);
+        if (treeSearch != null) {
+            treeSearch.setThreadCount(this.workerCount);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Get how many workers share the simulations of a move.
+     */
+    public int getWorkerCount(){
+        return workerCount;
+    }
+    //**********************************************************/
+
+    /*
+     * Give every move a time budget in milliseconds. The search runs until the budget is
+     * spent and then returns the best move found so far. Zero turns the time budget off.
+     */
+    public void setTimeBudget(long millis){
+        timeBudgetNanos = Math.max(0, millis) * 1_000_000L;
+    }
+    //**********************************************************/
+
+    /*
+     * Give every move a simulation budget, in place of the default simulation number.
+     * Zero turns the simulation budget off.
+     */
+    public void setNodeBudget(int nodeBudget){
+        this.nodeBudget = Math.max(0, nodeBudget);
+    }
+    //**********************************************************/
+
+    /*
+     * Give every move the simulations a latency target allows. A simulation budget set
+     * with setNodeBudget takes precedence. Zero turns the latency budget off.
+     */
+    public void setLatencyBudget(int latencyBudget){
+        this.latencyBudget = Math.max(0, latencyBudget);
+    }
+    //**********************************************************/
+
+    /*
+     * Get the simulations a latency target allows every move, 0 if there is none.
+     */
+    public int getLatencyBudget(){
+        return latencyBudget;
+    }
+    //**********************************************************/
+
+    /*
+     * Stop a search early once its move is settled at the given confidence, see
+     * StoppingRule. Zero, or anything outside of 0 to 1, runs the whole budget.
+     */
+    public void setStopConfidence(double confidence){
+        stopConfidence = confidence > 0 && confidence < 1 ? confidence : 0;
+        if (treeSearch != null) {
+            treeSearch.setStopConfidence(stopConfidence);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Let a policy plan the simulations of every move, in place of the fixed simulation
+     * number. A node budget still caps the plan, and a time budget still applies. Null
+     * goes back to the fixed simulation number.
+     */
+    public void setBudgetPolicy(BudgetPolicy budgetPolicy){
+        this.budgetPolicy = budgetPolicy;
+    }
+    //**********************************************************/
+
+    /*
+     * Return how many simulations a search may run. A search with only a time
+     * budget is limited by the clock alone.
+     */
+    public int getSimulationLimit(){
+        int budget = getBudget();
+        if (plannedSimulations > 0) {
+            return budget > 0 ? Math.min(budget, plannedSimulations) : plannedSimulations;
+        }
+        if (budget > 0) {
+            return budget;
+        }
+        return timeBudgetNanos > 0 ? Integer.MAX_VALUE : numSimulations;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the simulation budget of a move, the node budget if one is set, otherwise
+     * the latency budget, 0 if neither is.
+     */
+    private int getBudget(){
+        return nodeBudget > 0 ? nodeBudget : latencyBudget;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations the last search ran.
+     */
+    public int getCompletedSimulations(){
+        return completedSimulations;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the processor time the last search took, summed over its threads, in nanoseconds.
+     */
+    public long getCpuNanos(){
+        return cpuNanos;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the processor time of the calling thread, or the wall clock if the virtual
+     * machine does not measure it.
+     */
+    static long threadCpuNanos(){
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations of the budget the last search did not need, because
+     * its move was settled before. A search with only a time budget saves none.
+     */
+    public int getSavedSimulations(){
+        return savedSimulations;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations the last search started with, kept in the subtree of
+     * the moves played since the search before.
+     */
+    public int getReusedSimulations(){
+        return reusedSimulations;
+    }
+    //**********************************************************/
+
+    /*
+     * Stop the running search from any thread. The search returns the best move found
+     * so far, and every later search returns at once until the cancellation is cleared.
+     * A running ponder stops as well.
+     */
+    public void cancel(){
+        cancelled.set(true);
+        ponderStopped.set(true);
+    }
+    //**********************************************************/
+
+    /*
+     * Forget the previous game, the tree and its statistics included, and clear a
+     * cancellation.
+     */
+    public void newGame(){
+        clearCancel();
+        if (treeSearch != null) {
+            treeSearch.newGame();
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Clear a cancellation, so that searches run again.
+     */
+    public void clearCancel(){
+        cancelled.set(false);
+    }
+    //**********************************************************/
+
+    /*
+     * Let the search tree grow on the time of the player, see ponder. The flat search has
+     * no tree to keep the simulations in, and does not ponder.
+     */
+    public void setPondering(boolean pondering){
+        this.pondering = pondering;
+    }
+    //**********************************************************/
+
+    /*
+     * Stop the running ponder from any thread. Later ponders return at once, until the
+     * next search clears the stop.
+     */
+    public void stopPondering(){
+        ponderStopped.set(true);
+    }
+    //**********************************************************/
+
+    /*
+     * Clear the stop of the ponders, a search is about to start.
+     */
+    public void clearPonderStop(){
+        ponderStopped.set(false);
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations the last ponder ran.
+     */
+    public int getPonderedSimulations(){
+        return ponderedSimulations;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the search is cancelled.
+     */
+    public boolean isCancelled(){
+        return cancelled.get();
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the deadline, when there is one, has passed.
+     */
+    static boolean pastDeadline(long deadline){
+        return deadline != 0 && System.nanoTime() - deadline >= 0;
+    }
+    //**********************************************************/
+
+    /*
+     * Switch between the flat button statistics and a shared search tree, which
+     * the workers expand in parallel.
+     */
+    public void setTreeParallel(boolean treeParallel){
+        treeSearch = treeParallel ? new TreeSearch(workerCount) : null;
+        if (treeSearch != null) {
+            treeSearch.setRaveEquivalence(raveEquivalence);
+            treeSearch.setStopConfidence(stopConfidence);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the search expands a shared search tree.
+     */
+    public boolean isTreeParallel(){
+        return treeSearch != null;
+    }
+    //**********************************************************/
+
+    /*
+     * Let the search tree blend all moves as first statistics into its selection, with
+     * the given equivalence, see NodeArena.getRaveScore. Zero turns RAVE off. The flat
+     * search has no tree and is not changed.
+     */
+    public void setRaveEquivalence(int equivalence){
+        raveEquivalence = Math.max(0, equivalence);
+        if (treeSearch != null) {
+            treeSearch.setRaveEquivalence(raveEquivalence);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Fix the random seed, so the same game produces the same search results. Every
+     * root parallel worker gets a seed split off in worker order and its own share of
+     * the simulations, so the merged results depend on the worker count. They repeat
+     * for a fixed seed and a fixed worker count, whatever the thread scheduling. The
+     * threads of a tree search share one tree, so it repeats on a single thread only.
+     */
+    public void setSeed(long seed){
+        seedSource = new SplittableRandom(seed);
+        random = seedSource.split();
+    }
+    //**********************************************************/
+
     /*
      * Set the truth status of the immediate value variable
      */
@@ -88,15 +414,6 @@ public class MonteCarloSearch implements Game{
     }
     //**********************************************************/
 
-    /*
-     * Keep track of which buttons the computer has clicked
-     */
-    public void setCompClickedButton(int row, int col){
-        compClickedRow = row;
-        compClickedCol = col;
-    }
-    //**********************************************************/
-
     /*
      * Set state to that existing in the Board class
      */
@@ -122,85 +439,286 @@ public class MonteCarloSearch implements Game{
     //**********************************************************/
     
     /*
-     * Generate a random index which is not already occupied
+     * Generate a random index which is not already occupied, drawn once from the
+     * empty buttons kept by the state
      */
     public int generateUniqueRandom(){
         if (!state.isPresentMoveTerminal()) {
-            int randomPick = (int)(Math.random()*state.buttonList.size());
-            // loop exits if randomPick is not visited
-            while (state.buttonList.get(randomPick).visited() && 
-            state.buttonList.get(randomPick).clicked()) {
-                randomPick = (int)(Math.random()*state.buttonList.size());
-            }               
-            
-            return randomPick; 
+            return state.randomEmptyCell(random);
         }
         return -1;
     }
     //**********************************************************/
     
     /*
-     * Run a pure monte carlo search which emphasizes terminal moves
+     * Play moves until the state is terminal, or drawn because no line can be completed
+     * any more, the party to move given by the alternating number. A move which wins is
+     * always played, otherwise a move which stops the other party from winning,
+     * otherwise a random move. The threats of the whole board are looked up in the
+     * state, not only those of the last move. The winner is left in the state. The
+     * moves are recorded by button index and byte marker, so the loop allocates nothing.
+     */
+    public void playOut(int tempAltNum){
+        while (!state.isPresentMoveTerminal() && !state.isDeadDraw()) { // while the state is not terminal
+            byte mark = tempAltNum % 2 == 0 ? Game.XCell : Game.OCell;
+            int cell = state.threatCell(mark); // win if possible
+            if (cell == -1) {
+                cell = state.threatCell(mark == Game.XCell ? Game.OCell : Game.XCell); // else block
+            }
+            if (cell == -1) {
+                cell = generateUniqueRandom(); // else a unique random index
+            }
+            state.recordMove(cell, mark); // and apply the virtual move
+            tempAltNum++;
+            state.setMoveNumber(tempAltNum);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Run a pure monte carlo search which emphasizes terminal moves. The scores are kept
+     * in int arrays while the simulations run, and handed to the buttons at the end.
+     * Every few simulations the search stops if its move is already settled.
      */
     public void simulate(){
-        // first we store the present state info
-        state.storePresentState();
-        for (int i = 0; i < numSimulations; i++) { // do 1000 simulations
-            
-            simRow = state.getClickedRow(); // commence simulation from the clicked button
-            simCol = state.getClickedCol(); 
-            simMarker = state.getClickedMarker();
-            int tempAltNum = altNum; // store the real alternating number into a temp variable
-
-            while (!state.isPresentMoveTerminal()) { // while the state is not terminal
-
-                //**********************************************************/
-                if (state.availableTerminalMove() != null) { // if an immediate terminal move exists
-
-                    simRow = state.availableTerminalMove().getRow(); // pick it
-                    simCol = state.availableTerminalMove().getCol();  
-                    simMarker = tempAltNum % 2 == 0 ? Game.X : Game.O;
-                    state.recordPlayData(simRow, simCol, simMarker); // and record its info
-                    tempAltNum++;
-                    state.setMoveNumber(tempAltNum);
-
-                } else if (state.isNextMoveTerminal(simRow, simCol)) { // if a terminal move exists on the next move
-                    state.immedTerminalMoves(simRow, simCol); // pick it                
-                    simRow = state.getTerminalRow();
-                    simCol = state.getTerminalCol();
-                    simMarker = tempAltNum % 2 == 0 ? Game.X : Game.O;
-                    state.recordPlayData(simRow, simCol, simMarker); // and record its info
-                    tempAltNum++;
-                    state.setMoveNumber(tempAltNum);                    
-                } else{ // otherwise
-                    randomPick = generateUniqueRandom(); // generate a unique index
-                    simRow = state.buttonList.get(randomPick).getRow(); // obtain the index's location
-                    simCol = state.buttonList.get(randomPick).getCol();
-                    state.immedTerminalMoves(simRow, simCol);
-                    simMarker = tempAltNum % 2 == 0 ? Game.X : Game.O;
-                    state.recordPlayData(simRow, simCol, simMarker); // and apply the virtual move
-                    tempAltNum++;
-                    state.setMoveNumber(tempAltNum); 
-                }           
+        if (workerCount > 1) {
+            simulateInParallel();
+            return;
+        }
+        long cpuStart = threadCpuNanos();
+        int mark = state.getJournalSize(); // the present state is the journal mark
+        int limit = getSimulationLimit();
+        completedSimulations = 0;
+        savedSimulations = 0;
+        loadScores();
+        boolean checked = stopConfidence > 0 && state.getSymmetryGroup() == 1;
+        for (int i = 0; i < limit; i++) { // do the budgeted simulations
+            if (cancelled.get() || (i % CLOCK_CHECK_INTERVAL == 0 && pastDeadline(deadline))) {
+                break; // cancelled, or the time budget is spent, the clock is read every few simulations only
+            }
+            if (checked && i > 0 && i % StoppingRule.CHECK_INTERVAL == 0 && isSettled()) {
+                savedSimulations = limit == Integer.MAX_VALUE ? 0 : limit - i;
+                break; // the move cannot change any more at the stopping confidence
+            }
+
+            // commence simulation from the present state, with the real alternating number
+            playOut(altNum);
+            updateScores(mark, state.getWinner());
+            state.undoTo(mark); // take back the simulated moves only
+            completedSimulations++;
+        }
+        storeScores();
+        cpuNanos = threadCpuNanos() - cpuStart;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the free button with the highest UCT score wins more often than every
+     * other free button, at the stopping confidence. A button no simulation reached could
+     * be anything, so it keeps the search going. On a symmetric board the scores of
+     * equivalent buttons are pooled when the move is chosen, and the search is never
+     * stopped early.
+     */
+    private boolean isSettled(){
+        int leader = -1;
+        double max = 0;
+        int moveCount = 0;
+        for (int cell = 0; cell < visitNumbers.length; cell++) {
+            if (state.getCell(cell) != Game.EmptyCell) {
+                continue;
+            }
+            if (visitNumbers[cell] == 0) {
+                return false;
+            }
+            moveCount++;
+            double uctScore = Button.computeUCTScore(winScores[cell], visitNumbers[cell], numSimulations);
+            if (leader == -1 || max < uctScore) {
+                max = uctScore;
+                leader = cell;
+            }
+        }
+        if (leader == -1) {
+            return false;
+        }
+        double floor = StoppingRule.lowerBound(winScores[leader], visitNumbers[leader], moveCount, stopConfidence);
+        for (int cell = 0; cell < visitNumbers.length; cell++) {
+            if (cell != leader && state.getCell(cell) == Game.EmptyCell
+                && StoppingRule.upperBound(winScores[cell], visitNumbers[cell], moveCount, stopConfidence) >= floor) {
+                return false;
+            }
+        }
+        return true;
+    }
+    //**********************************************************/
+
+    /*
+     * Copy the win scores and visit numbers of the buttons into the score arrays.
+     */
+    private void loadScores(){
+        int cellCount = state.buttonList.size();
+        if (winScores == null || winScores.length != cellCount) {
+            winScores = new int[cellCount];
+            visitNumbers = new int[cellCount];
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            winScores[cell] = state.buttonList.get(cell).getWinScore();
+            visitNumbers[cell] = state.buttonList.get(cell).getVisitedNumber();
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Score the moves of the last simulation, the journal entries since the mark. In a win
+     * the moves of the winner are rewarded, for the computer this builds its attack, and
+     * for the player it is a defensive manoeuver. In a draw every move gets a visit.
+     */
+    private void updateScores(int mark, byte winner){
+        for (int k = mark; k < state.getJournalSize(); k++) {
+            int cell = state.getJournalEntry(k);
+            if (cell == State.TERMINAL_ENTRY) {
+                continue;
+            }
+            if (winner == Game.EmptyCell) {
+                visitNumbers[cell]++;
+            } else if (state.getCell(cell) == winner) {
+                winScores[cell] += rewardVal;
+                visitNumbers[cell]++;
+            }
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Hand the score arrays back to the buttons, and establish the UCT value of every
+     * button whose visit number changed.
+     */
+    private void storeScores(){
+        for (int cell = 0; cell < visitNumbers.length; cell++) {
+            Button button = state.buttonList.get(cell);
+            if (visitNumbers[cell] != button.getVisitedNumber()) {
+                button.setWinScore(winScores[cell]);
+                button.setVisitNumber(visitNumbers[cell]);
+                button.setUCTScore((double) winScores[cell], (double) visitNumbers[cell], (double) numSimulations);
             }
-                //**********************************************************/
-            
-            //**********************************************************/
-            if (!state.isDraw) { // if the game ends in a win
-                if (state.winMarker.equals(computerMarker)) { // and if the computer is the victor
-                    updateComputerScore(); // update the win score
-                } 
-                else {
-                    updatePlayerScore();// update the win score if the player wins, a defensive manoeuver
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Run a root parallel search. Every worker gets its own state copy, random generator
+     * and share of the simulations, and the scores of the workers are merged into the
+     * buttons of the board state afterwards. When the search may stop early, the workers
+     * run in rounds of a few simulations each, and the stopping rule is checked between
+     * the rounds on the scores of all workers together.
+     */
+    public void simulateInParallel(){
+        List<MonteCarloSearch> workers = new ArrayList<>();
+        List<Future<?>> results = new ArrayList<>();
+        int limit = getSimulationLimit();
+        boolean checked = stopConfidence > 0 && state.getSymmetryGroup() == 1;
+        int round = checked ? StoppingRule.CHECK_INTERVAL * workerCount : limit; // the simulations between two checks
+        for (int w = 0; w < workerCount; w++) { // the seeds are handed out in worker order
+            State workerState = state.copyState();
+            workerState.clearWinScores();
+            MonteCarloSearch worker = new MonteCarloSearch(workerState, 0, seedSource.split());
+            worker.setCompMarker(computerMarker);
+            worker.setPlayerMarker(playerMarker);
+            worker.setAltNum(altNum);
+            worker.deadline = deadline;
+            worker.cancelled = cancelled;
+            workers.add(worker);
+        }
+        completedSimulations = 0;
+        savedSimulations = 0;
+        cpuNanos = 0;
+        for (int started = 0; started < limit; started += round) {
+            int batch = limit == Integer.MAX_VALUE ? round : Math.min(round, limit - started);
+            results.clear();
+            for (int w = 0; w < workerCount; w++) {
+                MonteCarloSearch worker = workers.get(w);
+                worker.numSimulations = batch == Integer.MAX_VALUE ? batch
+                    : batch / workerCount + (w < batch % workerCount ? 1 : 0);
+                results.add(getWorkerPool().submit(worker::simulate));
+            }
+            try {
+                for (Future<?> result : results) {
+                    result.get(); // wait for every worker to finish the round
                 }
-            } else {
-                updateVisitNumber(); // if draw, update the visit number of the squares
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A simulation worker failed.", e.getCause());
+            }
+            for (MonteCarloSearch worker : workers) {
+                completedSimulations += worker.completedSimulations;
+                cpuNanos += worker.cpuNanos;
+            }
+            if (cancelled.get() || pastDeadline(deadline) || limit - started <= batch) {
+                break; // cancelled, out of time, or the whole budget is spent
+            }
+            if (checked && isSettled(workers)) {
+                savedSimulations = limit == Integer.MAX_VALUE ? 0 : limit - completedSimulations;
+                break; // the move cannot change any more at the stopping confidence
             }
-            //**********************************************************/
-            state.clearPlayData(); // clear the play data
-            state.restoreOriginalState(); // and restore the original state
         }
-        state.clearStoredData(); // clear stored data, so we can analyse the next actual move
+        mergeWorkerScores(workers);
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the move is settled on the scores of the buttons together with
+     * those the workers gathered so far. The score arrays are only used for the check,
+     * the buttons are left alone until the workers are merged.
+     */
+    private boolean isSettled(List<MonteCarloSearch> workers){
+        loadScores();
+        for (MonteCarloSearch worker : workers) {
+            for (int cell = 0; cell < visitNumbers.length; cell++) {
+                winScores[cell] += worker.winScores[cell];
+                visitNumbers[cell] += worker.visitNumbers[cell];
+            }
+        }
+        return isSettled();
+    }
+    //**********************************************************/
+
+    /*
+     * Add the win scores and visit numbers of the workers to the board state buttons,
+     * and establish their UCT values over the total number of simulations.
+     */
+    public void mergeWorkerScores(List<MonteCarloSearch> workers){
+        for (int i = 0; i < state.buttonList.size(); i++) {
+            Button button = state.buttonList.get(i);
+            int winScore = button.getWinScore();
+            int visitNum = button.getVisitedNumber();
+            for (MonteCarloSearch worker : workers) {
+                Button workerButton = worker.state.buttonList.get(i);
+                winScore += workerButton.getWinScore();
+                visitNum += workerButton.getVisitedNumber();
+            }
+            if (visitNum > button.getVisitedNumber()) { // only buttons reached by a simulation change
+                button.setWinScore(winScore);
+                button.setVisitNumber(visitNum);
+                button.setUCTScore((double) winScore, (double) visitNum, (double) numSimulations);
+            }
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return the threads shared by the root parallel searches, one per core.
+     * The threads are daemons, so closing the game frame still ends the program.
+     */
+    static synchronized ExecutorService getWorkerPool(){
+        if (workerPool == null) {
+            workerPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "mcts-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return workerPool;
     }
     //**********************************************************/
 
@@ -209,88 +727,175 @@ public class MonteCarloSearch implements Game{
      * available to the board class.
      */
     public void selectBestIndex() {  
+        long start = System.nanoTime();
+        deadline = timeBudgetNanos > 0 ? start + timeBudgetNanos : 0;
+        completedSimulations = 0;
+        reusedSimulations = 0;
+        savedSimulations = 0;
+        cpuNanos = 0;
+        if (budgetPolicy != null) {
+            planBudget(start);
+        }
 
-        if (checkVisitStatus()) {
-            simulate();
+        if (treeSearch == null && checkVisitStatus()) {
+            runFlatSearch();
         }
 
-        state.immedTerminalMoves(compClickedRow, compClickedCol); // determine the immediate terminal moves for the clicked button 
+        int terminalCell = state.threatCell(State.markOf(computerMarker)); // a move which wins at once
+        if (terminalCell == -1) {
+            terminalCell = state.threatCell(State.markOf(playerMarker)); // or one which stops the player from winning
+        }
 
-        if (state.availableTerminalMove() != null) { // if an immediate terminal move exists
+        if (terminalCell != -1) { // if an immediate terminal move exists
             immediateExists = true; // inform the board class of such information
-            immRow = state.availableTerminalMove().getRow();  // and provide the location of 
-            immCol = state.availableTerminalMove().getCol();  // the terminal move
-
-        } else if (state.isNextMoveTerminal(state.getClickedRow(), state.getClickedCol())) {  
-            immediateExists = true;  // if the next move is a terminal move, inform the Board class              
-            immRow = state.getTerminalRow(); // and provide the information of the next terminal move
-            immCol = state.getTerminalCol();
-            
+            immRow = terminalCell / state.size;  // and provide the location of
+            immCol = terminalCell % state.size;  // the terminal move
+
         } else{ // otherwise             
                  
-            findMaxUCTScore();   // find the button with the maximum UCT value
+            if (treeSearch != null) { // take the most visited move of the search tree
+                runTreeSearch();
+            } else {
+                findMaxUCTScore();   // find the button with the maximum UCT value
+            }
         } 
+        if (budgetPolicy != null) {
+            budgetPolicy.record(cpuNanos);
+        }
+        plannedSimulations = 0;
     }
     //**********************************************************/
 
     /*
-     * Updates the visit number of the squares in case of draw, and establishes the UCT value of each button.
+     * Plan the simulations of the move with the budget policy, from the free buttons and
+     * the open threats of both parties. If the game has a processor time cap, the deadline
+     * is brought forward to the share of the move, spread over the threads.
      */
-    public void updateVisitNumber() {
-
-        for (Button button : state.buttonList) {
-            if (button.visited() && !button.clicked()) { // if the button is visited but not yet clicked
-                int visitNum = button.getVisitedNumber();
-                visitNum += 1; // update the visit number
-                button.setVisitNumber(visitNum);
-                button.setUCTScore((double) button.getWinScore(), (double) visitNum, (double) numSimulations);
+    private void planBudget(long start){
+        int legalMoves = 0;
+        for (int cell = 0; cell < state.size * state.size; cell++) {
+            if (state.getCell(cell) == Game.EmptyCell) {
+                legalMoves++;
             }
-        }        
+        }
+        int openThreats = state.openThreatCount(Game.XCell) + state.openThreatCount(Game.OCell);
+        plannedSimulations = budgetPolicy.plan(legalMoves, openThreats);
+        long share = budgetPolicy.moveCpuNanos(legalMoves);
+        if (share > 0) {
+            long shareDeadline = start + share / workerCount;
+            deadline = deadline == 0 ? shareDeadline : Math.min(deadline, shareDeadline);
+        }
     }
     //**********************************************************/
 
     /*
-     * Rewards winning, establishes the UCT value of buttons.
+     * Return the simulations of the next round of a search which ran the given number,
+     * its top moves the given margin apart, or 0 if the search is over. Without a budget
+     * policy every search is a single round.
      */
-    public void updateComputerScore() {
+    private int nextRound(int completed, double margin){
+        if (budgetPolicy == null || savedSimulations > 0 || cancelled.get() || pastDeadline(deadline)) {
+            return 0; // settled, cancelled or out of time
+        }
+        int extra = budgetPolicy.extension(completed, margin);
+        int budget = getBudget();
+        return budget > 0 ? Math.min(extra, budget - completed) : extra;
+    }
+    //**********************************************************/
 
-        for (Button button : state.buttonList) {
-            if (button.visited() && !button.clicked()) { // if the button is visited but not yet clicked
-                // if the button marker is same as computer marker
-                if (button.getMarker().equals(computerMarker)) {
-                    int winScore = button.getWinScore();
-                    int visitNum = button.getVisitedNumber();
-                    winScore += rewardVal; // reward the computer marked squares 
-                    visitNum += 1; // update the visit number
-                    button.setWinScore(winScore); // update the win/loss scores of the buttons
-                    button.setVisitNumber(visitNum);
-                    button.setUCTScore((double) winScore, (double) visitNum, (double) numSimulations);
-                } 
-            }
-        }        
+    /*
+     * Run the flat simulations in rounds, as long as the budget policy extends the search.
+     * The scores of every round add up in the buttons.
+     */
+    private void runFlatSearch(){
+        simulate();
+        int completed = completedSimulations;
+        long cpu = cpuNanos;
+        int extra;
+        while ((extra = nextRound(completed, flatLeadMargin())) > 0) {
+            plannedSimulations = extra;
+            simulate();
+            completed += completedSimulations;
+            cpu += cpuNanos;
+        }
+        completedSimulations = completed;
+        cpuNanos = cpu;
     }
     //**********************************************************/
 
     /*
-     * Rewards winning squares in case of a computer loss, and establishes the UCT value of buttons.
-     * Used to prevent a player from winning.
+     * Run the tree search in rounds, as long as the budget policy extends the search. A
+     * round goes on with the tree of the round before. When pondering, the visits kept
+     * from the ponder are taken off the budget, so a well pondered reply returns at once.
      */
-    public void updatePlayerScore() {
+    private void runTreeSearch(){
+        int limit = getSimulationLimit();
+        if (pondering && limit != Integer.MAX_VALUE) { // the simulations of the ponder count towards the budget
+            limit = Math.max(1, limit - treeSearch.getReusableVisits(state.getHash()));
+        }
+        IndexBest = treeSearch.search(state, altNum, limit, deadline, seedSource, cancelled);
+        reusedSimulations = treeSearch.getReusedVisits();
+        int completed = treeSearch.getCompletedSimulations();
+        long cpu = treeSearch.getCpuNanos();
+        savedSimulations = treeSearch.getSavedSimulations();
+        int extra;
+        while (!treeSearch.isRootProven() && (extra = nextRound(completed, treeSearch.getLeadMargin())) > 0) {
+            IndexBest = treeSearch.search(state, altNum, extra, deadline, seedSource, cancelled);
+            completed += treeSearch.getCompletedSimulations();
+            cpu += treeSearch.getCpuNanos();
+            savedSimulations = treeSearch.getSavedSimulations();
+        }
+        completedSimulations = completed;
+        cpuNanos = cpu;
+    }
+    //**********************************************************/
 
-        for (Button button : state.buttonList) {
-            if (button.visited() && !button.clicked()) { // if the button is visited but not yet clicked
-                // if the button marker is same as the player marker
-                if (button.getMarker().equals(playerMarker)) {
-                    int winScore = button.getWinScore();
-                    int visitNum = button.getVisitedNumber();
-                    winScore += rewardVal; // reward the player marked squares 
-                    visitNum += 1; // update the visit number
-                    button.setWinScore(winScore); // update the win/loss scores of the buttons
-                    button.setVisitNumber(visitNum);
-                    button.setUCTScore((double) winScore, (double) visitNum, (double) numSimulations);
-                } 
+    /*
+     * Search the present state for the party to move, while the player decides. The
+     * search runs on the calling thread alone, at half duty, see TreeSearch.ponder,
+     * until the player moves and stopPondering is called. The budget is the simulation
+     * limit of a move for every free button, so that each reply gets about a full search,
+     * up to MAX_PONDER_SIMULATIONS. The next search takes over the subtree of the reply
+     * which was played.
+     */
+    public void ponder(){
+        ponderedSimulations = 0;
+        if (!pondering || treeSearch == null || ponderStopped.get()) {
+            return;
+        }
+        int legalMoves = 0;
+        for (int cell = 0; cell < state.size * state.size; cell++) {
+            if (state.getCell(cell) == Game.EmptyCell) {
+                legalMoves++;
             }
-        }        
+        }
+        long budget = (long) getSimulationLimit() * legalMoves;
+        treeSearch.ponder(state, altNum, (int) Math.min(MAX_PONDER_SIMULATIONS, budget), seedSource, ponderStopped);
+        ponderedSimulations = treeSearch.getCompletedSimulations();
+    }
+    //**********************************************************/
+
+    /*
+     * Return how far the win rate of the button the flat search would play lies above the
+     * best win rate of the other buttons. On a symmetric board one button of every group
+     * of equivalent buttons is compared.
+     */
+    private double flatLeadMargin(){
+        findMaxUCTScore();
+        int group = state.getSymmetryGroup();
+        Button leader = state.buttonList.get(IndexBest);
+        if (leader.getVisitedNumber() == 0) {
+            return 0;
+        }
+        double best = 0;
+        for (int cell = 0; cell < state.buttonList.size(); cell++) {
+            Button button = state.buttonList.get(cell);
+            if (cell != IndexBest && !button.visited() && button.getVisitedNumber() > 0
+                && state.canonicalCell(cell, group) == cell) {
+                best = Math.max(best, (double) button.getWinScore() / button.getVisitedNumber());
+            }
+        }
+        return (double) leader.getWinScore() / leader.getVisitedNumber() - best;
     }
     //**********************************************************/
 
@@ -314,6 +919,11 @@ public class MonteCarloSearch implements Game{
      * Find the  square with the maximum UCT score, and record its index.
      */
     public void findMaxUCTScore(){
+        int group = state.getSymmetryGroup();
+        if (group != 1) { // a symmetric board has fewer distinct moves
+            findMaxSymmetricUCTScore(group);
+            return;
+        }
         double max = 0;
         int index = 0;
         for (Button button : state.buttonList) {
@@ -326,9 +936,76 @@ public class MonteCarloSearch implements Game{
     }
     //**********************************************************/
 
+    /*
+     * Find the square with the maximum UCT score on a symmetric board. Only one square
+     * of every group of equivalent squares is considered, scored with the pooled win
+     * scores and visit numbers of the whole group.
+     */
+    public void findMaxSymmetricUCTScore(int group){
+        double max = 0;
+        for (int index = 0; index < state.buttonList.size(); index++) {
+            Button button = state.buttonList.get(index);
+            if (button.visited() || state.canonicalCell(index, group) != index) {
+                continue;
+            }
+            double winScore = 0;
+            double visitNum = 0;
+            for (int other = index; other < state.buttonList.size(); other++) {
+                if (state.canonicalCell(other, group) == index) { // the same move up to symmetry
+                    winScore += state.buttonList.get(other).getWinScore();
+                    visitNum += state.buttonList.get(other).getVisitedNumber();
+                }
+            }
+            if (visitNum > 0) {
+                double uctScore = Button.computeUCTScore(winScore, visitNum, numSimulations);
+                if (max < uctScore) {
+                    max = uctScore;
+                    IndexBest = index;
+                }
+            }
+        }
+    }
+    //**********************************************************/
+
     
     //**********************************************************/
 
+    /*
+     * Get the number of simulations which went through the move of a button index,
+     * taken from the search tree when there is one.
+     */
+    public int getMoveVisits(int index){
+        if (treeSearch != null) {
+            int child = treeSearch.findChild(index);
+            return child == NodeArena.NONE ? 0 : treeSearch.getNodes().getVisitNumber(child);
+        }
+        return state.buttonList.get(index).getVisitedNumber();
+    }
+    //**********************************************************/
+
+    /*
+     * Get the win score of the move of a button index, taken from the search tree
+     * when there is one.
+     */
+    public double getMoveWinScore(int index){
+        if (treeSearch != null) {
+            int child = treeSearch.findChild(index);
+            return child == NodeArena.NONE ? 0 : treeSearch.getNodes().getWinHalves(child) / 2.0;
+        }
+        return state.buttonList.get(index).getWinScore();
+    }
+    //**********************************************************/
+
+    /*
+     * Get the proven game value of the move of a button index for the party making it,
+     * NodeArena.UNPROVEN if the search did not prove it. Only the search tree proves moves.
+     */
+    public int getMoveProven(int index){
+        int child = treeSearch == null ? NodeArena.NONE : treeSearch.findChild(index);
+        return child == NodeArena.NONE ? NodeArena.UNPROVEN : treeSearch.getNodes().getProven(child);
+    }
+    //**********************************************************/
+
     /*
      * Get the best index, for the next computer move and provide it to the board class. 
      */
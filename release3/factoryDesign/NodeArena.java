@@ -0,0 +1,414 @@
+//**********************************************************/
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+//**********************************************************/
+
+
+public class NodeArena implements Game{
+
+    //* Fields
+    //**********************************************************/
+    // The nodes of a search tree, kept in parallel primitive arrays and addressed by index,
+    // in place of one object per node. The children of a node are allocated together, so
+    // selection and backpropagation read them one after the other in memory. A node takes
+    //   visits 4 + winHalves 4 + amafVisits 4 + amafWinHalves 4 + firstChild 4
+    //   + moves 2 + priors 1 = 23 bytes,
+    // where an object node with its atomic counters took over 150. The proven value sits
+    // in spare bits of the move. The rest of what the tree needs is not stored: the marker
+    // of a node follows from its depth, and its hash from the board the search walks down.
+    // A virtual loss is a visit without a win, so it is added to the visits and taken off
+    // again when the simulation is scored. A prior is a win rate known before the node
+    // was searched. It only enters the selection scores, as PRIOR_VISITS visits at that
+    // rate, and never the statistics of the node.
+    // The counters are updated atomically through var handles, and the children are
+    // published by a compare and set on firstChild, so threads may share the arena.
+    // Nodes are taken from the arena with a bump allocator. Once it is full no node is
+    // expanded any more, and the simulations run from the leaves they reach.
+    //**********************************************************/
+    static final int NONE = -1; // no node, the first child of a node which is not expanded
+    static final int UNPROVEN = -1; // proven values count half points like the simulation results
+    static final int PROVEN_LOSS = 0;
+    static final int PROVEN_DRAW = 1;
+    static final int PROVEN_WIN = 2;
+    static final int BYTES_PER_NODE = 23; // the footprint of a node, the sum of the arrays below
+    static final int PRIOR_VISITS = 16; // the visits a prior counts for, fewer are not taken as a prior
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle CHARS = MethodHandles.arrayElementVarHandle(char[].class);
+    private static final char MOVE_MASK = 0x03FF; // the button index, Zobrist.MAX_CELLS buttons at most
+    private static final char NO_MOVE = 0x0400; // set in the move of a root
+    private static final int PROVEN_SHIFT = 11; // the proven value + 1 is kept in bits 11 and 12
+    private static final char PROVEN_MASK = 0x1800;
+    private static final char LAST_SIBLING = 0x8000; // set in the move of the last child of a node
+    private static final int NO_PRIOR = 0xFF; // the prior of a node nothing was known about
+    private static final double PRIOR_SCALE = 254.0; // a prior byte is the win rate times this
+
+    private final int[] visits; // how many simulations passed through the node, running ones included
+    private final int[] winHalves; // wins counted in half points, a draw is worth one half
+    private final int[] amafVisits; // simulations in which the move was played at this point or later
+    private final int[] amafWinHalves; // their wins in half points, all moves as first
+    private final int[] firstChild; // the index of the first child, NONE until the node is expanded
+    private final char[] moves; // the button index of the move leading to the node, its proven value and LAST_SIBLING
+    private final byte[] priors; // the win rate known before the node was searched, NO_PRIOR if none
+    private final AtomicInteger next; // the first free node
+    //**********************************************************/
+
+    //* Node arena constructor
+    NodeArena(int capacity){
+        visits = new int[capacity];
+        winHalves = new int[capacity];
+        amafVisits = new int[capacity];
+        amafWinHalves = new int[capacity];
+        firstChild = new int[capacity];
+        moves = new char[capacity];
+        priors = new byte[capacity];
+        next = new AtomicInteger();
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Get the number of nodes the arena can hold.
+     */
+    public int capacity(){
+        return visits.length;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of nodes taken from the arena.
+     */
+    public int size(){
+        return Math.min(next.get(), visits.length);
+    }
+    //**********************************************************/
+
+    /*
+     * Free every node. Only call this while no thread searches the arena.
+     */
+    public void clear(){
+        next.set(0);
+    }
+    //**********************************************************/
+
+    /*
+     * Take the given number of consecutive nodes from the arena, and return the index of
+     * the first one, NONE if the arena is full. The nodes still have to be set up.
+     */
+    public int allocate(int count){
+        if (next.get() > visits.length - count) {
+            return NONE; // full, the counter is left alone so it cannot overflow
+        }
+        int first = next.getAndAdd(count);
+        return first <= visits.length - count ? first : NONE;
+    }
+    //**********************************************************/
+
+    /*
+     * Set up a new root, the node of the board a search starts from.
+     */
+    public int newRoot(){
+        int root = allocate(1);
+        if (root != NONE) {
+            setNode(root, NO_MOVE, NO_PRIOR);
+        }
+        return root;
+    }
+    //**********************************************************/
+
+    /*
+     * Set up a child, with a prior from statistics gathered earlier, taken only if they
+     * hold at least PRIOR_VISITS visits. The last child of a node is marked, it ends the
+     * siblings.
+     */
+    public void setChild(int node, int move, boolean last, int priorVisits, long priorHalves){
+        int prior = NO_PRIOR;
+        if (priorVisits >= PRIOR_VISITS) {
+            prior = (int) Math.round(priorHalves / 2.0 / priorVisits * PRIOR_SCALE);
+        }
+        setNode(node, (char) (move | (last ? LAST_SIBLING : 0)), prior);
+    }
+    //**********************************************************/
+
+    /*
+     * Set every field of a node which is not yet published to other threads.
+     */
+    private void setNode(int node, char move, int prior){
+        visits[node] = 0;
+        winHalves[node] = 0;
+        amafVisits[node] = 0;
+        amafWinHalves[node] = 0;
+        firstChild[node] = NONE;
+        moves[node] = (char) (move | (UNPROVEN + 1) << PROVEN_SHIFT);
+        priors[node] = (byte) prior;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the button index of the move leading to the node, -1 for a root.
+     */
+    public int getMove(int node){
+        int move = moves[node];
+        return (move & NO_MOVE) != 0 ? -1 : move & MOVE_MASK;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the node is the last child of its parent.
+     */
+    public boolean isLastSibling(int node){
+        return (moves[node] & LAST_SIBLING) != 0;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the index of the first child of the node, NONE if it is not expanded yet. The
+     * children follow the first one up to the last sibling.
+     */
+    public int getFirstChild(int node){
+        return (int) INTS.getAcquire(firstChild, node);
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of children of the node, 0 if it is not expanded yet.
+     */
+    public int getChildCount(int node){
+        int child = getFirstChild(node);
+        if (child == NONE) {
+            return 0;
+        }
+        int count = 1;
+        while (!isLastSibling(child)) {
+            child++;
+            count++;
+        }
+        return count;
+    }
+    //**********************************************************/
+
+    /*
+     * Install the children set up from the given index. Only the first thread to expand
+     * the node succeeds, the others continue with the children already in place, and
+     * their nodes stay unused. Return the first child of the node.
+     */
+    public int expand(int node, int first){
+        if (INTS.compareAndSet(firstChild, node, NONE, first)) {
+            return first;
+        }
+        return getFirstChild(node);
+    }
+    //**********************************************************/
+
+    /*
+     * Get the visit number of the node, virtual losses of running simulations included,
+     * its prior not.
+     */
+    public int getVisitNumber(int node){
+        return visits[node];
+    }
+    //**********************************************************/
+
+    /*
+     * Get the win score of the node in half points, from the point of view of the party
+     * which made the move.
+     */
+    public int getWinHalves(int node){
+        return winHalves[node];
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of all moves as first results of the node.
+     */
+    public int getAmafVisitNumber(int node){
+        return amafVisits[node];
+    }
+    //**********************************************************/
+
+    /*
+     * Get the proven game value of the node for the party which made the move,
+     * UNPROVEN if it is not known.
+     */
+    public int getProven(int node){
+        return (((char) CHARS.getVolatile(moves, node) & PROVEN_MASK) >> PROVEN_SHIFT) - 1;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the game value of the node is known.
+     */
+    public boolean isProven(int node){
+        return getProven(node) != UNPROVEN;
+    }
+    //**********************************************************/
+
+    /*
+     * Mark the node with its game value. A proven value is exact, so every thread
+     * which proves the node finds the same one.
+     */
+    public void setProven(int node, int value){
+        char move;
+        do {
+            move = (char) CHARS.getVolatile(moves, node);
+        } while (!CHARS.compareAndSet(moves, node, move, (char) (move & ~PROVEN_MASK | (value + 1) << PROVEN_SHIFT)));
+    }
+    //**********************************************************/
+
+    /*
+     * Prove the node from its children, if they allow it. A child which is a proven win
+     * for the party to move makes this node a loss, and once every child is proven the
+     * node is worth the opposite of the best of them. Return true if the node is proven.
+     */
+    public boolean proveFromChildren(int node){
+        int child = getFirstChild(node);
+        if (child == NONE) {
+            return false;
+        }
+        int best = PROVEN_LOSS;
+        boolean allProven = true;
+        while (true) {
+            int value = getProven(child);
+            if (value == PROVEN_WIN) {
+                setProven(node, PROVEN_LOSS);
+                return true;
+            }
+            allProven &= value != UNPROVEN;
+            best = Math.max(best, value);
+            if (isLastSibling(child)) {
+                break;
+            }
+            child++;
+        }
+        if (allProven) {
+            setProven(node, PROVEN_WIN - best);
+        }
+        return isProven(node);
+    }
+    //**********************************************************/
+
+    /*
+     * Count a simulation which is still running below this node as lost, so that
+     * other threads prefer different branches in the meantime.
+     */
+    public void addVirtualLoss(int node, int amount){
+        INTS.getAndAdd(visits, node, amount);
+    }
+    //**********************************************************/
+
+    /*
+     * Record a simulation result, 2 for a win, 1 for a draw and 0 for a loss,
+     * and take back the virtual loss placed on the way down.
+     */
+    public void update(int node, int resultHalves, int virtualAmount){
+        INTS.getAndAdd(visits, node, 1 - virtualAmount);
+        if (resultHalves != 0) {
+            INTS.getAndAdd(winHalves, node, resultHalves);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Record the result of a simulation in which the party of the node played its move
+     * later than this point, 2 for a win, 1 for a draw and 0 for a loss.
+     */
+    public void updateAmaf(int node, int resultHalves){
+        INTS.getAndAdd(amafVisits, node, 1);
+        if (resultHalves != 0) {
+            INTS.getAndAdd(amafWinHalves, node, resultHalves);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return the score of the node blended from its own results and its all moves as first
+     * results, beta = sqrt(k / (3n + k)) for n visits and equivalence k. A young node
+     * leans on the all moves as first results, an old one on its own. There is no
+     * exploration term, the all moves as first results already spread the simulations
+     * over the moves. Nodes without any result or prior come first.
+     */
+    public double getRaveScore(int node, int equivalence){
+        int visitNumber = visits[node];
+        int amaf = amafVisits[node];
+        int prior = priors[node] & 0xFF;
+        if (visitNumber == 0 && amaf == 0 && prior == NO_PRIOR) {
+            return Double.MAX_VALUE;
+        }
+        double value = 0;
+        if (prior != NO_PRIOR) {
+            value = (winHalves[node] / 2.0 + PRIOR_VISITS * prior / PRIOR_SCALE) / (visitNumber + PRIOR_VISITS);
+        } else if (visitNumber > 0) {
+            value = (winHalves[node] / 2.0) / visitNumber;
+        }
+        double amafValue = amaf == 0 ? value : (amafWinHalves[node] / 2.0) / amaf;
+        double beta = Math.sqrt(equivalence / (3.0 * visitNumber + equivalence));
+        return (1 - beta) * value + beta * amafValue;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the UCT score of the node as seen by its parent, a prior counted as
+     * PRIOR_VISITS visits at its win rate. Unvisited nodes without a prior come first.
+     */
+    public double getUCTScore(int node, double logParentVisits, double exploration){
+        double visitNumber = visits[node]; // a virtual loss is a visit without a win
+        double wins = winHalves[node] / 2.0;
+        int prior = priors[node] & 0xFF;
+        if (prior != NO_PRIOR) {
+            visitNumber += PRIOR_VISITS;
+            wins += PRIOR_VISITS * prior / PRIOR_SCALE;
+        }
+        if (visitNumber == 0) {
+            return Double.MAX_VALUE;
+        }
+        return wins / visitNumber + Math.sqrt(exploration * logParentVisits / visitNumber);
+    }
+    //**********************************************************/
+
+    /*
+     * Copy the subtree below the node into the empty target arena, breadth first, and
+     * return the index of its root there. Only call this while no thread searches either
+     * arena. Every node is copied once and the children of a node stay together, so the
+     * copy holds no unused nodes and the upper levels of the tree lie close together.
+     * While a node waits for its children, the target keeps its index in this arena in
+     * its firstChild slot. The target has to hold at least size() nodes.
+     */
+    public int copySubtree(int node, NodeArena target){
+        target.clear();
+        int root = target.allocate(1);
+        copyNode(node, target, root);
+        target.moves[root] = (char) (target.moves[root] & PROVEN_MASK | NO_MOVE);
+        for (int copied = root; copied < target.next.get(); copied++) { // the target is the queue
+            int original = target.firstChild[copied];
+            int child = firstChild[original];
+            if (child == NONE) {
+                target.firstChild[copied] = NONE;
+                continue;
+            }
+            int count = getChildCount(original);
+            int first = target.allocate(count);
+            for (int i = 0; i < count; i++) {
+                copyNode(child + i, target, first + i);
+            }
+            target.firstChild[copied] = first;
+        }
+        return root;
+    }
+    //**********************************************************/
+
+    /*
+     * Copy one node into the target arena, with its index here in place of its children.
+     */
+    private void copyNode(int node, NodeArena target, int copy){
+        target.visits[copy] = visits[node];
+        target.winHalves[copy] = winHalves[node];
+        target.amafVisits[copy] = amafVisits[node];
+        target.amafWinHalves[copy] = amafWinHalves[node];
+        target.moves[copy] = moves[node];
+        target.priors[copy] = priors[node];
+        target.firstChild[copy] = node;
+    }
+    //**********************************************************/
+}
@@ -1,4 +1,4 @@
 
 public enum ObjectChoice {
-    stateObject, boardObject, buttonObject, mSearchObject, userInteractionObject
+    stateObject, lineCountStateObject, boardObject, buttonObject, mSearchObject, engineObject, solverObject, userInteractionObject
 }
\ No newline at end of file
@@ -0,0 +1,236 @@
+//**********************************************************/
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+//**********************************************************/
+
+
+public class PerfectPlayTable implements Game{
+
+    //* Fields
+    //**********************************************************/
+    // The value and the best move of every 3x3 position, one byte per position. A position
+    // is indexed by its markers read as a base 3 number, empty 0, "X" 1 and "O" 2, the
+    // button index 0 being the lowest digit. The low 2 bits of the byte hold the value for
+    // the party to move, the next 4 bits the button index of the best move. Finished and
+    // unreachable positions are 0. The table is written by the solver on first use and
+    // mapped from the file after that.
+    //**********************************************************/
+    static final int SIZE = 3; // the board size the table covers
+    static final int ENTRIES = 19683; // 3 to the power of 9, every way to mark the buttons
+    private static final int MAGIC = 0x54545433; // "TTT3", marks a table file
+    private static final int VERSION = 1; // raised whenever the entry layout changes
+    private static final int HEADER = 8; // the magic and the version in front of the entries
+    private static final int NONE = 0; // value bits of a finished or unreachable position
+    private static final int LOSS = 1; // value bits of a lost position, a won one is LOSS + 2
+    private static final int[][] LINES = {{0, 1, 2}, {3, 4, 5}, {6, 7, 8}, {0, 3, 6}, {1, 4, 7}, {2, 5, 8}, {0, 4, 8}, {2, 4, 6}};
+
+    private static PerfectPlayTable shared; // the table of the default file, loaded by the first engine which needs it
+
+    private final ByteBuffer entries; // the entries, mapped from the file or held on the heap
+    private final boolean mapped; // false if the file could not be written and the table lives on the heap
+    //**********************************************************/
+
+    //* Perfect play table constructor
+    private PerfectPlayTable(ByteBuffer entries, boolean mapped){
+        this.entries = entries;
+        this.mapped = mapped;
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Write the table to the given file, or the default file, ahead of the first game.
+     */
+    public static void main(String[] args) throws IOException{
+        File file = args.length > 0 ? new File(args[0]) : defaultFile();
+        long start = System.nanoTime();
+        write(file.toPath(), generate());
+        System.out.println("Wrote " + file + " in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    }
+    //**********************************************************/
+
+    /*
+     * Return the file the shared table lives in, set with -Dtictactoe.table=<file>.
+     */
+    static File defaultFile(){
+        String name = System.getProperty("tictactoe.table");
+        return name != null ? new File(name) : new File(System.getProperty("java.io.tmpdir"), "tictactoe-3x3.table");
+    }
+    //**********************************************************/
+
+    /*
+     * Return the shared table, mapping the default file and writing it first if it is
+     * missing or out of date. If the file cannot be written the table is kept in memory.
+     */
+    static synchronized PerfectPlayTable shared(){
+        if (shared == null) {
+            shared = load(defaultFile().toPath());
+        }
+        return shared;
+    }
+    //**********************************************************/
+
+    /*
+     * Map the table in the file, after writing it if it is missing or out of date.
+     */
+    static PerfectPlayTable load(Path file){
+        try {
+            if (!isValid(file)) {
+                write(file, generate());
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, ENTRIES);
+                return new PerfectPlayTable(entries, true);
+            }
+        } catch (IOException e) {
+            return new PerfectPlayTable(ByteBuffer.wrap(generate()), false);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the file holds a table of the current version.
+     */
+    private static boolean isValid(Path file) throws IOException{
+        if (!Files.isRegularFile(file) || Files.size(file) != HEADER + ENTRIES) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Write the entries behind a header. The table is written to a file next to the
+     * given one first and then moved over it, so a reader never sees half a table.
+     */
+    private static void write(Path file, byte[] table) throws IOException{
+        Path folder = file.toAbsolutePath().getParent();
+        Files.createDirectories(folder);
+        Path partial = Files.createTempFile(folder, "tictactoe", ".partial");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                ByteBuffer body = ByteBuffer.wrap(table);
+                while (header.hasRemaining() || body.hasRemaining()) {
+                    channel.write(new ByteBuffer[] {header, body});
+                }
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Solve every position which can come up in a game, starting from the empty board.
+     */
+    static byte[] generate(){
+        byte[] table = new byte[ENTRIES];
+        boolean[] seen = new boolean[ENTRIES];
+        fill(new Position(SIZE), 0, new Solver(SIZE), table, seen);
+        return table;
+    }
+    //**********************************************************/
+
+    /*
+     * Solve the position, unless it is over, and go on with every move from it.
+     */
+    private static void fill(Position position, int index, Solver solver, byte[] table, boolean[] seen){
+        if (seen[index]) {
+            return;
+        }
+        seen[index] = true;
+        if (isOver(position)) {
+            return;
+        }
+        SearchResult result = solver.solve(position);
+        int move = result.getRow() * SIZE + result.getCol();
+        table[index] = (byte) (move << 2 | (result.getGameValue() + LOSS + 1));
+        int digit = position.getSideToMove().equals(Game.X) ? 1 : 2;
+        for (int cell = 0; cell < SIZE * SIZE; cell++) {
+            if (position.getCell(cell).equals(Game.Empty)) {
+                fill(position.play(cell / SIZE, cell % SIZE), index + digit * power(cell), solver, table, seen);
+            }
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if a line is complete or no button is left.
+     */
+    private static boolean isOver(Position position){
+        for (int[] line : LINES) {
+            String first = position.getCell(line[0]);
+            if (!first.equals(Game.Empty) && first.equals(position.getCell(line[1])) && first.equals(position.getCell(line[2]))) {
+                return true;
+            }
+        }
+        return position.getMoveNumber() == SIZE * SIZE;
+    }
+    //**********************************************************/
+
+    /*
+     * Return 3 to the power of the button index, the weight of its digit.
+     */
+    private static int power(int cell){
+        int weight = 1;
+        for (int k = 0; k < cell; k++) {
+            weight *= 3;
+        }
+        return weight;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the index of the position in the table.
+     */
+    static int indexOf(Position position){
+        int index = 0;
+        for (int cell = SIZE * SIZE - 1; cell >= 0; cell--) {
+            String marker = position.getCell(cell);
+            index = index * 3 + (marker.equals(Game.X) ? 1 : (marker.equals(Game.O) ? 2 : 0));
+        }
+        return index;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the best move of the position and its value, read from the table.
+     */
+    public SearchResult lookup(Position position){
+        if (position.getSize() != SIZE) {
+            throw new IllegalArgumentException("The perfect play table covers boards of size " + SIZE + ".");
+        }
+        long start = System.nanoTime();
+        int entry = entries.get(indexOf(position)) & 0xFF;
+        if ((entry & 3) == NONE) {
+            throw new IllegalArgumentException("The game of the position is already over.");
+        }
+        int move = entry >>> 2;
+        return new SearchResult(move / SIZE, move % SIZE, position.getSideToMove(), (entry & 3) - LOSS - 1, -1, 0,
+            System.nanoTime() - start);
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the table is mapped from its file, false if it was generated in
+     * memory because the file could not be written.
+     */
+    public boolean isMapped(){
+        return mapped;
+    }
+    //**********************************************************/
+}
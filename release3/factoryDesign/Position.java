@@ -0,0 +1,115 @@
+//**********************************************************/
+import java.util.Arrays;
+//**********************************************************/
+
+
+public class Position implements Game{
+
+    //* Fields
+    //**********************************************************/
+    private final int size; // the board is size x size buttons
+    private final String[] cells; // the marker of every button index, Game.Empty if free
+    private final String sideToMove; // the marker symbol of the party to move
+    private final int moveNumber; // how many buttons are occupied
+    //**********************************************************/
+
+    //* Position constructor, an empty board with "X" to move
+    Position(int size){
+        this(size, emptyCells(size), Game.X);
+    }
+    //**********************************************************/
+
+    //* Position constructor, the markers of every button and the party to move. "X" always
+    //* moves first, so the side to move has to agree with the number of markers.
+    Position(int size, String[] cells, String sideToMove){
+        if (size < 1 || cells.length != size * size) {
+            throw new IllegalArgumentException("A position of size " + size + " needs " + size * size + " cells.");
+        }
+        int xCount = 0;
+        int oCount = 0;
+        for (String cell : cells) {
+            if (Game.X.equals(cell)) {
+                xCount++;
+            } else if (Game.O.equals(cell)) {
+                oCount++;
+            } else if (!Game.Empty.equals(cell)) {
+                throw new IllegalArgumentException("Unknown marker \"" + cell + "\".");
+            }
+        }
+        String expected = xCount == oCount ? Game.X : Game.O;
+        if ((xCount != oCount && xCount != oCount + 1) || !expected.equals(sideToMove)) {
+            throw new IllegalArgumentException("The side to move does not match the markers on the board.");
+        }
+        this.size = size;
+        this.cells = cells.clone();
+        this.sideToMove = sideToMove;
+        this.moveNumber = xCount + oCount;
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Return a board of the given size with every button free.
+     */
+    private static String[] emptyCells(int size){
+        String[] cells = new String[size * size];
+        Arrays.fill(cells, Game.Empty);
+        return cells;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the position after the party to move places its marker on the given button.
+     */
+    public Position play(int row, int col){
+        int cell = row * size + col;
+        if (!cells[cell].equals(Game.Empty)) {
+            throw new IllegalArgumentException("The button " + row + ", " + col + " is already occupied.");
+        }
+        String[] next = cells.clone();
+        next[cell] = sideToMove;
+        return new Position(size, next, sideToMove.equals(Game.X) ? Game.O : Game.X);
+    }
+    //**********************************************************/
+
+    /*
+     * Get the board size.
+     */
+    public int getSize(){
+        return size;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the marker of a button index.
+     */
+    public String getCell(int cell){
+        return cells[cell];
+    }
+    //**********************************************************/
+
+    /*
+     * Get the marker of a button location.
+     */
+    public String getMarker(int row, int col){
+        return cells[row * size + col];
+    }
+    //**********************************************************/
+
+    /*
+     * Get the marker symbol of the party to move.
+     */
+    public String getSideToMove(){
+        return sideToMove;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of occupied buttons, the alternating number of the position.
+     */
+    public int getMoveNumber(){
+        return moveNumber;
+    }
+    //**********************************************************/
+}
@@ -0,0 +1,261 @@
+public class SearchResult implements Game{
+
+    //* Fields
+    //**********************************************************/
+    private final int row; // the location of the chosen move
+    private final int col;
+    private final String marker; // the marker symbol the move places
+    private final boolean immediate; // true if the move was a game ending move found without search
+    private final int visits; // the simulations which went through the move
+    private final double winScore; // the win score the move gathered in those simulations
+    private final int completedSimulations; // how many simulations the search ran
+    private final int reusedSimulations; // simulations kept from the searches of earlier moves
+    private final int savedSimulations; // simulations of the budget left unused because the move was settled early
+    private final long elapsedNanos; // how long the search took
+    private final long cpuNanos; // the processor time the search took, on all its threads
+    private final boolean cancelled; // true if the search was stopped before its budget was spent
+    private final boolean proven; // true if the move was found by the exact solver or the perfect play table, or proved by the tree search
+    private final int gameValue; // the proven value for the party to move, 1 win, 0 draw, -1 loss
+    private final int pliesToEnd; // the moves until a proven win or loss is over, -1 if not known
+    private final long solverNodes; // the positions the solver visited, 0 for a move the tree search proved
+    private final double playoutsPerSecond; // the calibrated playout rate the latency budget was sized with, 0 without a latency target
+    private final int latencyBudget; // the simulations the latency target allowed the move, 0 without a latency target
+    //**********************************************************/
+
+    //* Search result constructor
+    SearchResult(int row, int col, String marker, boolean immediate, int visits, double winScore,
+                 int completedSimulations, int reusedSimulations, int savedSimulations, long elapsedNanos,
+                 long cpuNanos, boolean cancelled, double playoutsPerSecond, int latencyBudget){
+        this.row = row;
+        this.col = col;
+        this.marker = marker;
+        this.immediate = immediate;
+        this.visits = visits;
+        this.winScore = winScore;
+        this.completedSimulations = completedSimulations;
+        this.reusedSimulations = reusedSimulations;
+        this.savedSimulations = savedSimulations;
+        this.elapsedNanos = elapsedNanos;
+        this.cpuNanos = cpuNanos;
+        this.cancelled = cancelled;
+        proven = false;
+        gameValue = 0;
+        pliesToEnd = -1;
+        solverNodes = 0;
+        this.playoutsPerSecond = playoutsPerSecond;
+        this.latencyBudget = latencyBudget;
+    }
+    //**********************************************************/
+
+    //* Search result constructor, for a move found by the exact solver or the perfect play table
+    SearchResult(int row, int col, String marker, int gameValue, int pliesToEnd, long solverNodes, long elapsedNanos){
+        this(row, col, marker, gameValue, pliesToEnd, solverNodes, 0, 0, 0, 0, 0, elapsedNanos,
+            elapsedNanos, false, 0, 0); // a proven move is counted as found on the calling thread
+    }
+    //**********************************************************/
+
+    //* Search result constructor, for a move the tree search proved, with the statistics of that search
+    SearchResult(int row, int col, String marker, int gameValue, int pliesToEnd, long solverNodes, int visits,
+                 double winScore, int completedSimulations, int reusedSimulations, int savedSimulations,
+                 long elapsedNanos, long cpuNanos, boolean cancelled, double playoutsPerSecond, int latencyBudget){
+        this.row = row;
+        this.col = col;
+        this.marker = marker;
+        immediate = false;
+        this.visits = visits;
+        this.winScore = winScore;
+        this.completedSimulations = completedSimulations;
+        this.reusedSimulations = reusedSimulations;
+        this.savedSimulations = savedSimulations;
+        this.elapsedNanos = elapsedNanos;
+        this.cpuNanos = cpuNanos;
+        this.cancelled = cancelled;
+        proven = true;
+        this.gameValue = gameValue;
+        this.pliesToEnd = pliesToEnd;
+        this.solverNodes = solverNodes;
+        this.playoutsPerSecond = playoutsPerSecond;
+        this.latencyBudget = latencyBudget;
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Get the row of the chosen move.
+     */
+    public int getRow(){
+        return row;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the column of the chosen move.
+     */
+    public int getCol(){
+        return col;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the marker symbol the chosen move places.
+     */
+    public String getMarker(){
+        return marker;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the move ends the game, or stops the opponent from ending it,
+     * and was therefore played without a search.
+     */
+    public boolean isImmediate(){
+        return immediate;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations which went through the chosen move.
+     */
+    public int getVisits(){
+        return visits;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the win score the chosen move gathered.
+     */
+    public double getWinScore(){
+        return winScore;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the win score of the chosen move per visit, 0 if it was never visited.
+     */
+    public double getValue(){
+        return visits == 0 ? 0 : winScore / visits;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations the search ran.
+     */
+    public int getCompletedSimulations(){
+        return completedSimulations;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations kept from the searches of earlier moves.
+     */
+    public int getReusedSimulations(){
+        return reusedSimulations;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations of the budget the search did not need, because the
+     * move was settled before, see StoppingRule.
+     */
+    public int getSavedSimulations(){
+        return savedSimulations;
+    }
+    //**********************************************************/
+
+    /*
+     * Get how long the search took, in nanoseconds.
+     */
+    public long getElapsedNanos(){
+        return elapsedNanos;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the processor time the search took, summed over its threads, in nanoseconds.
+     */
+    public long getCpuNanos(){
+        return cpuNanos;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the search was cancelled, the move is then only the best found so far.
+     */
+    public boolean isCancelled(){
+        return cancelled;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the move was found by the exact solver or the perfect play table,
+     * or proved by the tree search, and is therefore optimal.
+     */
+    public boolean isProven(){
+        return proven;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the game value proven for the party to move, 1 for a win, 0 for a draw and
+     * -1 for a loss. Only meaningful for a proven result.
+     */
+    public int getGameValue(){
+        return gameValue;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of moves, of both parties, until the proven win or loss is over,
+     * 0 for a draw and -1 if it is not known.
+     */
+    public int getPliesToEnd(){
+        return pliesToEnd;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of positions the solver visited, 0 for a move the tree search
+     * proved, whose simulations are counted by getCompletedSimulations.
+     */
+    public long getSolverNodes(){
+        return solverNodes;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the playouts per second the calibration measured on this host, which sized
+     * the latency budget, 0 if no latency target was set.
+     */
+    public double getPlayoutsPerSecond(){
+        return playoutsPerSecond;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the simulations the latency target allowed the move, 0 if no latency target
+     * was set. A simulation budget set on the engine takes precedence over it.
+     */
+    public int getLatencyBudget(){
+        return latencyBudget;
+    }
+    //**********************************************************/
+
+    @Override
+    public String toString(){
+        if (proven) {
+            return marker + " " + row + "," + col + " proven value=" + getGameValue()
+                + (pliesToEnd >= 0 ? " plies=" + pliesToEnd : "")
+                + (completedSimulations > 0 ? " visits=" + visits + " simulations=" + completedSimulations
+                    : " nodes=" + solverNodes)
+                + (reusedSimulations > 0 ? " reused=" + reusedSimulations : "")
+                + (savedSimulations > 0 ? " saved=" + savedSimulations : "") + " us=" + elapsedNanos / 1_000;
+        }
+        return marker + " " + row + "," + col + (immediate ? " immediate" : "") + " visits=" + visits
+            + " value=" + String.format("%.3f", getValue()) + " simulations=" + completedSimulations
+            + " reused=" + reusedSimulations + (savedSimulations > 0 ? " saved=" + savedSimulations : "")
+            + (latencyBudget > 0 ? " latency budget=" + latencyBudget + " at " + Math.round(playoutsPerSecond) + "/s" : "")
+            + " ms=" + elapsedNanos / 1_000_000;
+    }
+    //**********************************************************/
+}
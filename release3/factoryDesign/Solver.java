@@ -0,0 +1,277 @@
+public class Solver implements Game{
+
+    //* Fields
+    //**********************************************************/
+    // A negamax search with alpha-beta pruning which plays small boards perfectly. Values are
+    // seen by the party to move: WIN less the plies to the end for a win, 0 for a draw and
+    // minus that for a loss, so faster wins and slower losses are preferred. The values are
+    // relative to the position they belong to, which lets the transposition table share them
+    // between positions reached after different numbers of moves.
+    //**********************************************************/
+    static final int MAX_SIZE = 8; // the whole board fits into one long
+    static final int WIN = 100; // the value of a win on the move, less one per ply to get there
+    private static final int INFINITY = 127; // above every value, still fits into a bound entry
+
+    private final int size; // the board is size x size buttons
+    private final int winLength; // the markers in a row needed to win
+    private final long fullBoard; // a mask with every button set
+    private final long[][] cellLines; // the masks of the lines which pass through each button index
+    private final int[] moveOrder; // button indices, the ones on more lines first
+    private final TranspositionTable table; // exact bounds of positions solved before
+
+    private long nodes; // positions visited by the last solve
+    //**********************************************************/
+
+    //* Solver constructor, a full row, column or diagonal wins
+    Solver(int size){
+        this(size, size);
+    }
+    //**********************************************************/
+
+    //* Solver constructor, winLength markers in a row win
+    Solver(int size, int winLength){
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("The solver plays boards of size 1 to " + MAX_SIZE + ".");
+        }
+        this.size = size;
+        this.winLength = winLength;
+        int cellCount = size * size;
+        fullBoard = cellCount == 64 ? -1L : (1L << cellCount) - 1;
+        cellLines = createCellLines(LineTable.of(size, winLength));
+        moveOrder = createMoveOrder(cellLines);
+        table = new TranspositionTable(1 << 16);
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Return the masks of the lines through every button index.
+     */
+    private static long[][] createCellLines(LineTable table){
+        int cellCount = table.getSize() * table.getSize();
+        long[][] lines = new long[cellCount][];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int[] through = table.getCellLines(cell);
+            lines[cell] = new long[through.length];
+            for (int k = 0; k < through.length; k++) {
+                for (int member : table.getLineCells(through[k])) {
+                    lines[cell][k] |= 1L << member;
+                }
+            }
+        }
+        return lines;
+    }
+    //**********************************************************/
+
+    /*
+     * Order the button indices by the number of lines through them, on a full size
+     * board the center and the corners come first, ties in index order.
+     */
+    private static int[] createMoveOrder(long[][] cellLines){
+        int[] order = new int[cellLines.length];
+        int most = 0;
+        for (long[] through : cellLines) {
+            most = Math.max(most, through.length);
+        }
+        int k = 0;
+        for (int lines = most; lines >= 0; lines--) {
+            for (int cell = 0; cell < cellLines.length; cell++) {
+                if (cellLines[cell].length == lines) {
+                    order[k++] = cell;
+                }
+            }
+        }
+        return order;
+    }
+    //**********************************************************/
+
+    /*
+     * Solve the position for the party to move, and return the best move with its value.
+     */
+    public SearchResult solve(Position position){
+        if (position.getSize() != size) {
+            throw new IllegalArgumentException("The solver plays on a board of size " + size + ".");
+        }
+        long start = System.nanoTime();
+        long xBits = 0;
+        long oBits = 0;
+        long hash = Zobrist.emptyBoard(size, winLength);
+        for (int cell = 0; cell < size * size; cell++) {
+            if (position.getCell(cell).equals(Game.X)) {
+                xBits |= 1L << cell;
+                hash ^= Zobrist.key(Game.XCell, cell);
+            } else if (position.getCell(cell).equals(Game.O)) {
+                oBits |= 1L << cell;
+                hash ^= Zobrist.key(Game.OCell, cell);
+            }
+        }
+        if (hasLine(xBits) || hasLine(oBits) || (xBits | oBits) == fullBoard) {
+            throw new IllegalArgumentException("The game of the position is already over.");
+        }
+        boolean xToMove = position.getSideToMove().equals(Game.X);
+        long mine = xToMove ? xBits : oBits;
+        long theirs = xToMove ? oBits : xBits;
+        nodes = 0;
+        table.newSearch();
+
+        // the root is searched like any other node, then every move is checked against
+        // its value so that the move is the one which reaches it
+        int value = negamax(mine, theirs, hash, xToMove ? Game.XCell : Game.OCell, -INFINITY, INFINITY);
+        int bestMove = -1;
+        long empty = fullBoard & ~(mine | theirs);
+        for (int cell : moveOrder) {
+            if ((empty & (1L << cell)) == 0) {
+                continue;
+            }
+            int moveValue = moveValue(mine, theirs, hash, xToMove ? Game.XCell : Game.OCell, cell, value - 1, value + 1);
+            if (moveValue == value) {
+                bestMove = cell;
+                break;
+            }
+        }
+        return new SearchResult(bestMove / size, bestMove % size, position.getSideToMove(), Integer.signum(value),
+            value == 0 ? 0 : WIN - Math.abs(value), nodes, System.nanoTime() - start);
+    }
+    //**********************************************************/
+
+    /*
+     * Return the value of a move for the party making it, searched within the given window.
+     */
+    private int moveValue(long mine, long theirs, long hash, byte mark, int cell, int alpha, int beta){
+        long moved = mine | (1L << cell);
+        if (completesLine(moved, cell)) {
+            return WIN - 1; // won with this very move
+        }
+        if ((moved | theirs) == fullBoard) {
+            return 0; // the last button is filled without a line
+        }
+        byte other = mark == Game.XCell ? Game.OCell : Game.XCell;
+        int reply = negamax(theirs, moved, hash ^ Zobrist.key(mark, cell), other, -widen(beta), -widen(alpha));
+        return shorten(-reply);
+    }
+    //**********************************************************/
+
+    /*
+     * Return the value of the position for the party to move, within the window alpha, beta.
+     * A value at or below alpha is an upper bound, at or above beta a lower bound.
+     */
+    private int negamax(long mine, long theirs, long hash, byte mark, int alpha, int beta){
+        nodes++;
+        long empty = fullBoard & ~(mine | theirs);
+        for (int cell : moveOrder) { // a win on the move ends the search at once
+            if ((empty & (1L << cell)) != 0 && completesLine(mine | (1L << cell), cell)) {
+                return WIN - 1;
+            }
+        }
+
+        int alphaStart = alpha;
+        int tableMove = -1;
+        long data = table.probe(hash);
+        if (data != 0 && TranspositionTable.isBound(data)) {
+            int stored = TranspositionTable.boundValue(data);
+            int flag = TranspositionTable.boundFlag(data);
+            tableMove = TranspositionTable.boundMove(data);
+            if (flag == TranspositionTable.EXACT) {
+                return stored;
+            } else if (flag == TranspositionTable.LOWER) {
+                alpha = Math.max(alpha, stored);
+            } else {
+                beta = Math.min(beta, stored);
+            }
+            if (alpha >= beta) {
+                return stored;
+            }
+        }
+
+        // a single threat of the opponent has to be blocked, every other move loses
+        int forced = -1;
+        for (int cell : moveOrder) {
+            if ((empty & (1L << cell)) != 0 && completesLine(theirs | (1L << cell), cell)) {
+                if (forced != -1) {
+                    return -(WIN - 2); // two threats cannot both be blocked
+                }
+                forced = cell;
+            }
+        }
+
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int k = -1; k < moveOrder.length; k++) {
+            int cell = k == -1 ? (forced != -1 ? forced : tableMove) : moveOrder[k];
+            if (cell == -1 || (empty & (1L << cell)) == 0 || (k != -1 && (cell == tableMove || cell == forced))) {
+                continue; // the first try is the forced or the stored move, it is not searched twice
+            }
+            int value = moveValue(mine, theirs, hash, mark, cell, alpha, beta);
+            if (value > best) {
+                best = value;
+                bestMove = cell;
+            }
+            alpha = Math.max(alpha, value);
+            if (alpha >= beta || forced != -1) {
+                break;
+            }
+        }
+
+        int flag = best <= alphaStart ? TranspositionTable.UPPER
+            : (best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT);
+        table.store(hash, TranspositionTable.packBound(best, flag, bestMove, Long.bitCount(empty)));
+        return best;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the markers complete a line through the given button index.
+     */
+    private boolean completesLine(long bits, int cell){
+        for (long line : cellLines[cell]) {
+            if ((bits & line) == line) {
+                return true;
+            }
+        }
+        return false;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the markers complete any line.
+     */
+    private boolean hasLine(long bits){
+        for (int cell = 0; cell < size * size; cell++) {
+            if ((bits & (1L << cell)) != 0 && completesLine(bits, cell)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    //**********************************************************/
+
+    /*
+     * Move a value one ply further from the end, the value of a position seen from the
+     * position one move before it.
+     */
+    private static int shorten(int value){
+        return value > 0 ? value - 1 : (value < 0 ? value + 1 : 0);
+    }
+    //**********************************************************/
+
+    /*
+     * Undo shorten for a window bound, rounding away from zero so that the window of
+     * the reply is never narrower than the window of the move.
+     */
+    private static int widen(int bound){
+        if (bound >= INFINITY || bound <= -INFINITY) {
+            return bound;
+        }
+        return bound > 0 ? bound + 1 : (bound < 0 ? bound - 1 : 0);
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of positions the last solve visited.
+     */
+    public long getNodeCount(){
+        return nodes;
+    }
+    //**********************************************************/
+}
@@ -1,10 +1,9 @@
 //**********************************************************/
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Comparator;
 import java.util.PriorityQueue;
+import java.util.SplittableRandom;
 //**********************************************************/
 
 
@@ -15,6 +14,7 @@ public class State implements Game{
     
     //******************* */
     int size;
+    int winLength; // the markers in a row needed to win, the rules of this class know size only
     int totalMoveNumber; // keep track of the total move number
     boolean isDraw; // true if the state is a draw
     String winMarker; // the marker symbol of the winning party
@@ -23,9 +23,9 @@ public class State implements Game{
     int[] colParity; // a column
     int[] diagParity; // or a diagonal
 
-    HashMap<Integer, String> rowMap; // records symbols of same kind for a row, 
-    HashMap<Integer, String> colMap; // column
-    HashMap<Integer, String> dMap; // and diagonal
+    byte[] rowMarks; // records the first marker placed on a row, Game.EmptyCell if none,
+    byte[] colMarks; // column
+    byte[] diagMarks; // and diagonal
     //*************************************** */
     int[] rowFillFactor; // determines how many markers ("X" or "O") occupy a row 
     int[] colFillFactor; // column
@@ -64,9 +64,9 @@ public class State implements Game{
     int[] storedColParity;
     int[] storedDiagParity;
 
-    HashMap<Integer, String> storedRowMap; // an X row, or an O row
-    HashMap<Integer, String> storedColMap;
-    HashMap<Integer, String> storedDMap;
+    byte[] storedRowMarks; // an X row, or an O row
+    byte[] storedColMarks;
+    byte[] storedDiagMarks;
     //*************************************** */
     int[] storedRowFillFactor;
     int[] storedColFillFactor;
@@ -75,12 +75,56 @@ public class State implements Game{
     int[] storedQueueValsArr;
     int[] storedVisitedInfoArr;
     int[] storedClickedInfoArr;
+    int storedJournalSize;
+    long storedHash;
+    long[] storedSymmetryHashes;
+
+    //****************************************************** */
+    // move journal, so that simulated moves can be taken back one by one
+    //****************************************************** */
+    static final int TERMINAL_ENTRY = -1; // journal entry of an immediate terminal move addition
+    static final int ROW_KEY = 1, ROW_PARITY = 2; // what a move changed on its row,
+    static final int COL_KEY = 4, COL_PARITY = 8; // column
+    static final int EQ_DIAG_KEY = 16, EQ_DIAG_PARITY = 32; // and diagonals
+    static final int UNEQ_DIAG_KEY = 64, UNEQ_DIAG_PARITY = 128;
+    static final int ROW_COL_WON = 256, EQ_DIAG_WON = 512, UNEQ_DIAG_WON = 1024; // win flags before the move
+
+    int[] journal; // button index of every recorded move, or TERMINAL_ENTRY
+    int[] journalFlags; // the changes made by each journal entry
+    int[] journalEmptyPos; // where a recorded button sat in the empty button array
+    long[] journalHash; // the zobrist hash before each recorded move
+    int journalSize; // the number of journal entries
+
+    int[] emptyCells; // the button indices without a marker, dense and in no particular order
+    int[] emptyPosition; // where each button index sits in emptyCells
+    int emptyCount; // how many buttons are empty
+
+    long hash; // the zobrist hash of the markers on the board
+    int[][] cellMaps; // where each symmetry of the board carries every button index
+    long[] symmetryHashes; // the hash of the board seen through each symmetry
+
+    static final String[] MARKERS = {Game.Empty, Game.X, Game.O}; // the marker symbol of each byte marker
+    byte[] cells; // the byte marker of every button index
+    byte[] storedCells;
 
 
     //**********************************************************/
     //* State constructor
     State(int size){
+        this(size, size);
+    }
+    //**********************************************************/
+
+    //* State constructor, for subclasses whose lines are shorter than the board
+    protected State(int size, int winLength){
+        if (size < 1 || size > Zobrist.MAX_SIZE) {
+            throw new IllegalArgumentException("A state holds boards of size 1 to " + Zobrist.MAX_SIZE + ".");
+        }
+        if (winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("A win length of " + winLength + " does not fit a board of size " + size + ".");
+        }
         this.size = size;
+        this.winLength = winLength;
         //**************************************** */
         this.totalMoveNumber = 0;
         this.winMarker = Game.Empty;
@@ -90,9 +134,9 @@ public class State implements Game{
         colParity = new int[size];
         diagParity = new int[2];// 0 equal, 1 unequal
 
-        rowMap = new HashMap<>();
-        colMap = new HashMap<>();
-        dMap = new HashMap<>();
+        rowMarks = new byte[size];
+        colMarks = new byte[size];
+        diagMarks = new byte[2];
         //************************************************* */
         rowFillFactor = new int[size];
         colFillFactor = new int[size];
@@ -127,9 +171,9 @@ public class State implements Game{
         storedColParity = new int[size];
         storedDiagParity = new int[2];
 
-        storedRowMap = new HashMap<>();
-        storedColMap = new HashMap<>();
-        storedDMap = new HashMap<>();
+        storedRowMarks = new byte[size];
+        storedColMarks = new byte[size];
+        storedDiagMarks = new byte[2];
 
         storedRowFillFactor = new int[size];
         storedColFillFactor = new int[size];
@@ -137,6 +181,22 @@ public class State implements Game{
 
         storedQueueValsArr = new int[size * size];
         storedVisitedInfoArr = new int[size * size];
+
+        journal = new int[8 * size * size];
+        journalFlags = new int[8 * size * size];
+        journalEmptyPos = new int[8 * size * size];
+        journalHash = new long[8 * size * size];
+        journalSize = 0;
+        cellMaps = Symmetry.cellMaps(size);
+        symmetryHashes = new long[Symmetry.COUNT];
+        storedSymmetryHashes = new long[Symmetry.COUNT];
+        resetHashes();
+
+        emptyCells = new int[size * size];
+        emptyPosition = new int[size * size];
+        resetEmptyCells();
+        cells = new byte[size * size];
+        storedCells = new byte[size * size];
     }
     //**********************************************************/
 
@@ -144,6 +204,80 @@ public class State implements Game{
     //*Methods
     //**********************************************************/
 
+    /*
+     * Create an independent copy of this state, buttons and queues included, so that
+     * a search worker can run its own simulations without touching the board state.
+     * The win scores of the copied buttons start from zero.
+     */
+    public State copyState(){
+        State copy = new State(size);
+        copy.createButtons();
+        copyInto(copy);
+        return copy;
+    }
+    //**********************************************************/
+
+    /*
+     * Copy the play data of this state into a freshly created state of the same size.
+     */
+    protected void copyInto(State copy){
+        copy.totalMoveNumber = totalMoveNumber;
+        copy.isDraw = isDraw;
+        copy.winMarker = winMarker;
+
+        copy.rowParity = rowParity.clone();
+        copy.colParity = colParity.clone();
+        copy.diagParity = diagParity.clone();
+
+        copy.rowMarks = rowMarks.clone();
+        copy.colMarks = colMarks.clone();
+        copy.diagMarks = diagMarks.clone();
+        copy.cells = cells.clone();
+
+        copy.rowFillFactor = rowFillFactor.clone();
+        copy.colFillFactor = colFillFactor.clone();
+        copy.diagFillFactor = diagFillFactor.clone();
+
+        for (int i = 0; i < buttonList.size(); i++) { // mirror the button info, scores excluded
+            Button original = buttonList.get(i);
+            Button copied = copy.buttonList.get(i);
+            copied.setMarker(original.getMarker());
+            copied.setVisitStatus(original.visited());
+            copied.setClickedStatus(original.clicked());
+            copied.setQueueVal(original.getQueueVal());
+        }
+        if (!rowQueueArr.isEmpty()) { // the queues are built from the copied queue values
+            copy.createRowQueue();
+            copy.createColQueue();
+            copy.createDiagQueue();
+        }
+        for (Button terminal : immedTerminalMovList) {
+            copy.immedTerminalMovList.add(copy.button[terminal.getRow()][terminal.getCol()]);
+        }
+
+        copy.terminal_i = terminal_i;
+        copy.terminal_j = terminal_j;
+        copy.rowColTerminalNow = rowColTerminalNow;
+        copy.eqDiagTerminalNow = eqDiagTerminalNow;
+        copy.unEqDiagTerminalNow = unEqDiagTerminalNow;
+
+        copy.journal = journal.clone();
+        copy.journalFlags = journalFlags.clone();
+        copy.journalEmptyPos = journalEmptyPos.clone();
+        copy.journalHash = journalHash.clone();
+        copy.hash = hash;
+        copy.symmetryHashes = symmetryHashes.clone();
+        copy.journalSize = journalSize;
+        copy.emptyCells = emptyCells.clone();
+        copy.emptyPosition = emptyPosition.clone();
+        copy.emptyCount = emptyCount;
+
+        copy.clickedRow = clickedRow;
+        copy.clickedCol = clickedCol;
+        copy.clickedMarker = clickedMarker;
+    }
+    //**********************************************************/
+
     // Original State activity
     
     //********************************************************************************** */
@@ -160,23 +294,17 @@ public class State implements Game{
      * Store info about rows and columns. If a terminal condition exists
      * make such information available.
      */
-    public void checkRowCol(HashMap<Integer, String> hMap, int[] parityArray, int i, String marker){
+    public void checkRowCol(byte[] lineMarks, int[] parityArray, int i, byte mark){
         
-        if (hMap.isEmpty()) { // if rowMap or colMap is empty, put the new marker info in it
-            hMap.put(i, marker);
+        if (lineMarks[i] == Game.EmptyCell) { // if the row or column has no marker yet, record the new one
+            lineMarks[i] = mark;
             ++parityArray[i]; // update the parity array
-        } else {
-            if (!hMap.containsKey(i)) {// if the key is not in the map
-                hMap.put(i, marker); // add it to the map
-                ++parityArray[i];
-            } else if (hMap.get(i).equals(marker)) { // otherwise add keys of already existing markers
-                ++parityArray[i];
-                if (parityArray[i] == size) { // if the parity array is equal to size a win has occurred
-                    winMarker = marker;
-                    rowColTerminalNow = true; // make such information available
-                    return;
-                }
-            } 
+        } else if (lineMarks[i] == mark) { // otherwise count markers of the kind already there
+            ++parityArray[i];
+            if (parityArray[i] == size) { // if the parity array is equal to size a win has occurred
+                winMarker = MARKERS[mark];
+                rowColTerminalNow = true; // make such information available
+            }
         }
         
     }
@@ -186,17 +314,17 @@ public class State implements Game{
      * store information about diagonals. If a terminal state gets reached
      * make such information available.
      */
-    public void checkDiagonal(int i, int j, String marker){
+    public void checkDiagonal(int i, int j, byte mark){
         
         if(i == j) {
-            if (!dMap.containsKey(0)) { // if the equal diagonal map is empty, put the new element in it
-                dMap.put(0, marker);
+            if (diagMarks[0] == Game.EmptyCell) { // if the equal diagonal has no marker yet, record the new one
+                diagMarks[0] = mark;
                 ++diagParity[0]; // update the equal diagonal parity array
             } else {
-                if (dMap.get(0).equals(marker)) {
+                if (diagMarks[0] == mark) {
                     ++diagParity[0];
                     if (diagParity[0] == size) { // if a terminal state is reached
-                        winMarker = marker;     // make such information known
+                        winMarker = MARKERS[mark]; // make such information known
                         eqDiagTerminalNow = true;
                         return;
                     }
@@ -205,14 +333,14 @@ public class State implements Game{
             }
         } 
         if (i+j == size -1) { // if a row/col falls into the unequal diagonal
-            if (!dMap.containsKey(1)) { // and the map of such diagonal is empty
-                dMap.put(1, marker); // put the new element into the map
+            if (diagMarks[1] == Game.EmptyCell) { // and such diagonal has no marker yet
+                diagMarks[1] = mark; // record the new one
                 ++diagParity[1]; // update the unequal diagonal parity array
             } else {
-                if (dMap.get(1).equals(marker)) {
+                if (diagMarks[1] == mark) {
                     ++diagParity[1];
                     if (diagParity[1] == size) { // if a terminal state exists 
-                        winMarker = marker;
+                        winMarker = MARKERS[mark];
                         unEqDiagTerminalNow = true; // make such information available
                         return;
                     }
@@ -399,41 +527,119 @@ public class State implements Game{
     }
     //**********************************************************/
 
+    /*
+     * Set the location of the terminal move found by isNextMoveTerminal
+     */
+    protected void setTerminalMove(int i, int j){
+        terminal_i = i;
+        terminal_j = j;
+    }
+    //**********************************************************/
+
     /*
      * Check if immediate terminal moves exist and add them to 
      * an immediate terminal move list.
      */
     public void immedTerminalMoves(int i, int j){
         if (rowFillFactor[i] == size - 1 && rowParity[i] == size - 1) { // if fill factor and parity array reach size - 1
-            immedTerminalMovList.add(rowQueueArr.get(i).peek());// a terminal move exists, at the beginning of the queue
+            addTerminalMove(rowQueueArr.get(i).peek());// a terminal move exists, at the beginning of the queue
         }
         if (colFillFactor[j] == size - 1 && colParity[j] == size - 1) {
-            immedTerminalMovList.add(colQueueArr.get(j).peek());
+            addTerminalMove(colQueueArr.get(j).peek());
         }
         if (diagFillFactor[0] ==  size - 1 && diagParity[0] == size - 1) {
-            immedTerminalMovList.add(diagQueueArr.get(0).peek());
+            addTerminalMove(diagQueueArr.get(0).peek());
         }
         if (diagFillFactor[1] == size - 1 && diagParity[1] == size - 1) {
-            immedTerminalMovList.add(diagQueueArr.get(1).peek());
+            addTerminalMove(diagQueueArr.get(1).peek());
         }
     }
     //**********************************************************/
 
+    /*
+     * Add a button to the immediate terminal move list, and journal the addition
+     */
+    public void addTerminalMove(Button terminal){
+        immedTerminalMovList.add(terminal);
+        addJournalEntry(TERMINAL_ENTRY, 0);
+    }
+    //**********************************************************/
+
     /*
      * Return the button of the available game ending move
      */
     public Button availableTerminalMove(){
-        if (!immedTerminalMovList.isEmpty()) { // if a terminal move exists
-            for (Button button : immedTerminalMovList) {
-                if (!button.visited()) {// and it's not already made
-                    return button; // return it
-                }
+        for (int k = 0; k < immedTerminalMovList.size(); k++) { // if a terminal move exists
+            Button button = immedTerminalMovList.get(k);
+            if (!button.visited()) {// and it's not already made
+                return button; // return it
             }
         }
         return null;
     }
     //**********************************************************/
 
+    /*
+     * Return the button index of a move which completes a line for the given marker,
+     * on any line of the board, -1 if there is none.
+     */
+    public int threatCell(byte mark){
+        for (int k = 0; k < size; k++) {
+            if (rowFillFactor[k] == size - 1 && rowParity[k] == size - 1 && rowMarks[k] == mark) {
+                return emptyLineCell(k * size, 1);
+            }
+            if (colFillFactor[k] == size - 1 && colParity[k] == size - 1 && colMarks[k] == mark) {
+                return emptyLineCell(k, size);
+            }
+        }
+        if (diagFillFactor[0] == size - 1 && diagParity[0] == size - 1 && diagMarks[0] == mark) {
+            return emptyLineCell(0, size + 1);
+        }
+        if (diagFillFactor[1] == size - 1 && diagParity[1] == size - 1 && diagMarks[1] == mark) {
+            return emptyLineCell(size - 1, size - 1);
+        }
+        return -1;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the number of lines the marker can turn into a threat with one more move,
+     * the lines which hold winLength - 2 of its markers and no other marker.
+     */
+    public int openThreatCount(byte mark){
+        LineTable lines = LineTable.of(size, winLength);
+        int count = 0;
+        for (int line = 0; line < lines.getLineCount(); line++) {
+            int marks = 0;
+            for (int cell : lines.getLineCells(line)) {
+                if (cells[cell] == mark) {
+                    marks++;
+                } else if (cells[cell] != Game.EmptyCell) {
+                    marks = -1; // the other party holds the line
+                    break;
+                }
+            }
+            if (marks == winLength - 2) {
+                count++;
+            }
+        }
+        return count;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the empty button index of the line with the given first index and step
+     */
+    private int emptyLineCell(int first, int step){
+        for (int t = 0; t < size; t++) {
+            if (cells[first + t * step] == Game.EmptyCell) {
+                return first + t * step;
+            }
+        }
+        return -1;
+    }
+    //**********************************************************/
+
     /*
      * Return true if the next move is a game ending move 
      */
@@ -490,16 +696,393 @@ public class State implements Game{
     }
     //**********************************************************/
 
+    /*
+     * Return true if neither party can complete a line any more, and mark the state
+     * as a draw. The original State keeps no count of the lines left to win, and plays
+     * until the board is full.
+     */
+    public boolean isDeadDraw(){
+        return false;
+    }
+    //**********************************************************/
+
     /*
      * Record play data, the markers and the locations they occupy.
      */
     public void recordPlayData(int i, int j, String marker){
+        recordMove(i * size + j, markOf(marker));
+    }
+    //**********************************************************/
+
+    /*
+     * Record a move given by its button index and byte marker.
+     */
+    public void recordMove(int cell, byte mark){
+        int i = cell / size;
+        int j = cell % size;
+        String marker = MARKERS[mark];
+        // remember what the move changes, so that it can be taken back
+        int flags = (rowMarks[i] != Game.EmptyCell ? 0 : ROW_KEY) | (colMarks[j] != Game.EmptyCell ? 0 : COL_KEY);
+        if (i == j && diagMarks[0] == Game.EmptyCell) {
+            flags |= EQ_DIAG_KEY;
+        }
+        if (i + j == size - 1 && diagMarks[1] == Game.EmptyCell) {
+            flags |= UNEQ_DIAG_KEY;
+        }
+        flags |= (rowColTerminalNow ? ROW_COL_WON : 0) | (eqDiagTerminalNow ? EQ_DIAG_WON : 0)
+            | (unEqDiagTerminalNow ? UNEQ_DIAG_WON : 0);
+        int rowPar = rowParity[i], colPar = colParity[j], eqPar = diagParity[0], unEqPar = diagParity[1];
+
         button[i][j].setVisitStatus(true);
         button[i][j].setMarker(marker);
-        checkRowCol(rowMap, rowParity, i, marker);
-        checkRowCol(colMap, colParity, j, marker);
-        checkDiagonal(i, j, marker);
+        checkRowCol(rowMarks, rowParity, i, mark);
+        checkRowCol(colMarks, colParity, j, mark);
+        checkDiagonal(i, j, mark);
         setFillFactor(i, j);
+
+        flags |= (rowParity[i] != rowPar ? ROW_PARITY : 0) | (colParity[j] != colPar ? COL_PARITY : 0)
+            | (diagParity[0] != eqPar ? EQ_DIAG_PARITY : 0) | (diagParity[1] != unEqPar ? UNEQ_DIAG_PARITY : 0);
+        journalMove(cell, mark, flags);
+    }
+    //**********************************************************/
+
+    /*
+     * Return the byte marker of a marker symbol.
+     */
+    static byte markOf(String marker){
+        if (marker.equals(Game.X)) {
+            return Game.XCell;
+        }
+        return marker.equals(Game.O) ? Game.OCell : Game.EmptyCell;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the markers in a row needed to win.
+     */
+    public int getWinLength(){
+        return winLength;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the byte marker of a button index.
+     */
+    public byte getCell(int cell){
+        return cells[cell];
+    }
+    //**********************************************************/
+
+    /*
+     * Get the byte marker of the winning party, Game.EmptyCell if there is no winner.
+     */
+    public byte getWinner(){
+        return isDraw ? Game.EmptyCell : markOf(winMarker);
+    }
+    //**********************************************************/
+
+    /*
+     * Append an entry to the move journal, growing the journal if needed
+     */
+    protected void addJournalEntry(int entry, int flags){
+        if (journalSize == journal.length) {
+            journal = Arrays.copyOf(journal, 2 * journal.length);
+            journalFlags = Arrays.copyOf(journalFlags, 2 * journalFlags.length);
+            journalEmptyPos = Arrays.copyOf(journalEmptyPos, 2 * journalEmptyPos.length);
+            journalHash = Arrays.copyOf(journalHash, 2 * journalHash.length);
+        }
+        journal[journalSize] = entry;
+        journalFlags[journalSize] = flags;
+        journalSize++;
+    }
+    //**********************************************************/
+
+    /*
+     * Journal a recorded move, swap its button out of the empty buttons and
+     * add its key to the hash
+     */
+    protected void journalMove(int cell, byte mark, int flags){
+        int position = removeEmptyCell(cell);
+        addJournalEntry(cell, flags);
+        journalEmptyPos[journalSize - 1] = position;
+        journalHash[journalSize - 1] = hash;
+        cells[cell] = mark;
+        hash ^= Zobrist.key(mark, cell);
+        for (int s = 0; s < Symmetry.COUNT; s++) {
+            symmetryHashes[s] ^= Zobrist.key(mark, cellMaps[s][cell]);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Get the zobrist hash of the present board
+     */
+    public long getHash(){
+        return hash;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the hash the board would have after the given move, without making it
+     */
+    public long hashAfter(int cell, String marker){
+        return hash ^ Zobrist.key(marker, cell);
+    }
+    //**********************************************************/
+
+    /*
+     * Get the canonical hash, the smallest hash over the symmetries of the board.
+     * Boards which are rotations or reflections of each other share it.
+     */
+    public long getCanonicalHash(){
+        long canonical = symmetryHashes[0];
+        for (int s = 1; s < Symmetry.COUNT; s++) {
+            canonical = Math.min(canonical, symmetryHashes[s]);
+        }
+        return canonical;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the canonical hash the board would have after the given move
+     */
+    public long canonicalHashAfter(int cell, String marker){
+        long canonical = Long.MAX_VALUE;
+        for (int s = 0; s < Symmetry.COUNT; s++) {
+            canonical = Math.min(canonical, symmetryHashes[s] ^ Zobrist.key(marker, cellMaps[s][cell]));
+        }
+        return canonical;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the symmetries which leave the present board unchanged, one bit per symmetry
+     */
+    public int getSymmetryGroup(){
+        int group = 1; // the identity always belongs to the group
+        for (int s = 1; s < Symmetry.COUNT; s++) {
+            if (symmetryHashes[s] == symmetryHashes[0]) {
+                group |= 1 << s;
+            }
+        }
+        return group;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the representative of a button index under a symmetry group, the smallest
+     * index the group carries it to. Moves with the same representative lead to
+     * boards which are rotations or reflections of each other.
+     */
+    public int canonicalCell(int cell, int group){
+        int canonical = cell;
+        for (int s = 1; s < Symmetry.COUNT; s++) {
+            if ((group & (1 << s)) != 0) {
+                canonical = Math.min(canonical, cellMaps[s][cell]);
+            }
+        }
+        return canonical;
+    }
+    //**********************************************************/
+
+    /*
+     * Set the hashes to those of an empty board
+     */
+    protected void resetHashes(){
+        hash = Zobrist.emptyBoard(size, winLength);
+        Arrays.fill(symmetryHashes, hash);
+    }
+    //**********************************************************/
+
+    /*
+     * Store the hashes, so that restoreOriginalState can bring them back
+     */
+    protected void storeHashes(){
+        storedHash = hash;
+        System.arraycopy(symmetryHashes, 0, storedSymmetryHashes, 0, Symmetry.COUNT);
+    }
+    //**********************************************************/
+
+    /*
+     * Restore the stored hashes
+     */
+    protected void restoreHashes(){
+        hash = storedHash;
+        System.arraycopy(storedSymmetryHashes, 0, symmetryHashes, 0, Symmetry.COUNT);
+    }
+    //**********************************************************/
+
+    /*
+     * Swap a button out of the empty buttons, and return the place it had
+     */
+    private int removeEmptyCell(int cell){
+        int position = emptyPosition[cell];
+        int last = emptyCells[emptyCount - 1]; // the last empty button takes the freed place
+        emptyCells[position] = last;
+        emptyPosition[last] = position;
+        emptyCells[emptyCount - 1] = cell;
+        emptyPosition[cell] = emptyCount - 1;
+        emptyCount--;
+        return position;
+    }
+    //**********************************************************/
+
+    /*
+     * Swap a button taken back by undo to its old place among the empty buttons.
+     * The button sits right behind the empty ones, as undo runs latest move first.
+     */
+    private void restoreEmptyCell(int cell, int position){
+        emptyCount++;
+        int moved = emptyCells[position];
+        emptyCells[position] = cell;
+        emptyPosition[cell] = position;
+        emptyCells[emptyCount - 1] = moved;
+        emptyPosition[moved] = emptyCount - 1;
+    }
+    //**********************************************************/
+
+    /*
+     * Mark every button as empty
+     */
+    protected void resetEmptyCells(){
+        emptyCount = size * size;
+        for (int cell = 0; cell < emptyCount; cell++) {
+            emptyCells[cell] = cell;
+            emptyPosition[cell] = cell;
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Rebuild the empty buttons from the visit status of the buttons
+     */
+    protected void rebuildEmptyCells(){
+        resetEmptyCells();
+        for (Button buttons : buttonList) {
+            if (buttons.visited()) {
+                removeEmptyCell(buttons.getRow() * size + buttons.getCol());
+            }
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return a uniformly drawn empty button index, with a single bounded draw
+     */
+    public int randomEmptyCell(SplittableRandom random){
+        return emptyCells[random.nextInt(emptyCount)];
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of empty buttons
+     */
+    public int getEmptyCount(){
+        return emptyCount;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the journal size, a mark which undoTo can return to
+     */
+    public int getJournalSize(){
+        return journalSize;
+    }
+    //**********************************************************/
+
+    /*
+     * Get a journal entry, the button index of a recorded move or TERMINAL_ENTRY
+     */
+    public int getJournalEntry(int k){
+        return journal[k];
+    }
+    //**********************************************************/
+
+    /*
+     * Take back journal entries, latest first, until the journal has the given size.
+     * Only the buttons and lines touched since the mark are changed.
+     */
+    public void undoTo(int mark){
+        while (journalSize > mark) {
+            journalSize--;
+            int entry = journal[journalSize];
+            if (entry == TERMINAL_ENTRY) {
+                if (!immedTerminalMovList.isEmpty()) {
+                    immedTerminalMovList.remove(immedTerminalMovList.size() - 1);
+                }
+            } else {
+                restoreEmptyCell(entry, journalEmptyPos[journalSize]);
+                hash = journalHash[journalSize];
+                byte moved = cells[entry];
+                cells[entry] = Game.EmptyCell;
+                for (int s = 0; s < Symmetry.COUNT; s++) {
+                    symmetryHashes[s] ^= Zobrist.key(moved, cellMaps[s][entry]);
+                }
+                undoMove(entry / size, entry % size, moved, journalFlags[journalSize]);
+            }
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Put a button whose queue value changed back into its proper queue position
+     */
+    public void requeue(PriorityQueue<Button> queue, Button changed){
+        queue.remove(changed);
+        queue.add(changed);
+    }
+    //**********************************************************/
+
+    /*
+     * Take back a single recorded move of the given byte marker, using the changes
+     * stored in its journal flags
+     */
+    protected void undoMove(int i, int j, byte mark, int flags){
+        button[i][j].setVisitStatus(false);
+        button[i][j].setMarker(Game.Empty);
+        button[i][j].setQueueVal(0); // the empty button moves back to the front of its queues
+        requeue(rowQueueArr.get(i), button[i][j]);
+        requeue(colQueueArr.get(j), button[i][j]);
+        if (i == j) {
+            requeue(diagQueueArr.get(0), button[i][j]);
+        }
+        if (i + j == size - 1) {
+            requeue(diagQueueArr.get(1), button[i][j]);
+        }
+
+        --rowFillFactor[i];
+        --colFillFactor[j];
+        rowParity[i] -= (flags & ROW_PARITY) != 0 ? 1 : 0;
+        colParity[j] -= (flags & COL_PARITY) != 0 ? 1 : 0;
+        if ((flags & ROW_KEY) != 0) {
+            rowMarks[i] = Game.EmptyCell;
+        }
+        if ((flags & COL_KEY) != 0) {
+            colMarks[j] = Game.EmptyCell;
+        }
+        if (i == j) {
+            --diagFillFactor[0];
+            diagParity[0] -= (flags & EQ_DIAG_PARITY) != 0 ? 1 : 0;
+            if ((flags & EQ_DIAG_KEY) != 0) {
+                diagMarks[0] = Game.EmptyCell;
+            }
+        }
+        if (i + j == size - 1) {
+            --diagFillFactor[1];
+            diagParity[1] -= (flags & UNEQ_DIAG_PARITY) != 0 ? 1 : 0;
+            if ((flags & UNEQ_DIAG_KEY) != 0) {
+                diagMarks[1] = Game.EmptyCell;
+            }
+        }
+
+        rowColTerminalNow = (flags & ROW_COL_WON) != 0;
+        eqDiagTerminalNow = (flags & EQ_DIAG_WON) != 0;
+        unEqDiagTerminalNow = (flags & UNEQ_DIAG_WON) != 0;
+        if (!rowColTerminalNow && !eqDiagTerminalNow && !unEqDiagTerminalNow) {
+            winMarker = Game.Empty;
+        }
+        isDraw = false; // a board with an empty button is not drawn yet
+        --totalMoveNumber;
     }
 
     //*********************************************************************************************/
@@ -529,18 +1112,12 @@ public class State implements Game{
     //**********************************************************/
 
     /*
-     * Store the map information
+     * Store the line marker information
      */
     public void storeMapVals(){
-        for (Map.Entry<Integer,String> entry : rowMap.entrySet()) {
-            storedRowMap.put(entry.getKey(), entry.getValue());
-        }
-        for (Map.Entry<Integer,String> entry : colMap.entrySet()) {
-            storedColMap.put(entry.getKey(), entry.getValue());
-        }
-        for (Map.Entry<Integer,String> entry : dMap.entrySet()) {
-            storedDMap.put(entry.getKey(), entry.getValue());
-        }
+        System.arraycopy(rowMarks, 0, storedRowMarks, 0, size);
+        System.arraycopy(colMarks, 0, storedColMarks, 0, size);
+        System.arraycopy(diagMarks, 0, storedDiagMarks, 0, 2);
     }
     //**********************************************************/
 
@@ -594,6 +1171,9 @@ public class State implements Game{
         storeFillFactorVals();
         storeQueueVals();
         storeVisitedInfo();
+        storedJournalSize = journalSize;
+        storeHashes();
+        System.arraycopy(cells, 0, storedCells, 0, cells.length);
     }    
     //************************************************************************************** */
 
@@ -602,9 +1182,10 @@ public class State implements Game{
      */
     public void clearPlayData(){         
         
-        rowMap.clear();
-        colMap.clear();
-        dMap.clear();
+        Arrays.fill(rowMarks, Game.EmptyCell);
+        Arrays.fill(colMarks, Game.EmptyCell);
+        Arrays.fill(diagMarks, Game.EmptyCell);
+        Arrays.fill(cells, Game.EmptyCell);
 
         Arrays.fill(rowParity, 0);
         Arrays.fill(colParity, 0);
@@ -615,6 +1196,8 @@ public class State implements Game{
         totalMoveNumber = 0;
 
         immedTerminalMovList.clear();
+        journalSize = 0;
+        resetHashes();
 
         Arrays.fill(rowFillFactor, 0);
         Arrays.fill(colFillFactor, 0);
@@ -634,7 +1217,7 @@ public class State implements Game{
             buttons.setVisitStatus(false);
             buttons.setMarker(Game.Empty);
         }
-
+        resetEmptyCells();
     }
 
     //********************************************************************************************/
@@ -665,18 +1248,12 @@ public class State implements Game{
     //**********************************************************/
 
     /*
-     * Restore the map values.
+     * Restore the line marker values.
      */
     public void restoreMapValues(){
-        for (Map.Entry<Integer,String> entry : storedRowMap.entrySet()) {
-            rowMap.put(entry.getKey(), entry.getValue());
-        }
-        for (Map.Entry<Integer,String> entry : storedColMap.entrySet()) {
-            colMap.put(entry.getKey(), entry.getValue());
-        }
-        for (Map.Entry<Integer,String> entry : storedDMap.entrySet()) {
-            dMap.put(entry.getKey(), entry.getValue());
-        }
+        System.arraycopy(storedRowMarks, 0, rowMarks, 0, size);
+        System.arraycopy(storedColMarks, 0, colMarks, 0, size);
+        System.arraycopy(storedDiagMarks, 0, diagMarks, 0, 2);
     }
     //**********************************************************/
 
@@ -735,6 +1312,10 @@ public class State implements Game{
         restoreFilledFactorVals();
         restoreQueueVals();
         restoreVisitStatus();
+        rebuildEmptyCells();
+        journalSize = storedJournalSize;
+        restoreHashes();
+        System.arraycopy(storedCells, 0, cells, 0, cells.length);
     }
 
     //****************************************************************************** */
@@ -750,9 +1331,9 @@ public class State implements Game{
         Arrays.fill(storedColParity, 0);
         Arrays.fill(storedDiagParity, 0);
 
-        storedRowMap.clear();
-        storedColMap.clear();
-        storedDMap.clear();
+        Arrays.fill(storedRowMarks, Game.EmptyCell);
+        Arrays.fill(storedColMarks, Game.EmptyCell);
+        Arrays.fill(storedDiagMarks, Game.EmptyCell);
 
         Arrays.fill(storedRowFillFactor, 0);
         Arrays.fill(storedColFillFactor, 0);
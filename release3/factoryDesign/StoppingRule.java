@@ -0,0 +1,50 @@
+public class StoppingRule implements Game{
+
+    //* Fields
+    //**********************************************************/
+    // Confidence bounds on the win rates of the moves at the root, used to end a search
+    // once its move is settled. A win rate taken from n simulations is within
+    // sqrt(ln(1 / delta) / 2n) of the true rate with probability 1 - delta, by Hoeffding.
+    // The error is shared among the moves, so that all bounds hold together at the set
+    // confidence. A search is settled when the lower bound of the leading move lies above
+    // the upper bound of every other move.
+    //**********************************************************/
+    static final int CHECK_INTERVAL = 256; // simulations between two looks at the bounds
+    //**********************************************************/
+
+    //* Stopping rule constructor, only static bounds are provided
+    private StoppingRule(){
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Return how far the win rate of a move with the given visits may be from its true
+     * rate, with the error of the confidence shared among the given number of moves.
+     */
+    static double radius(int visits, int moveCount, double confidence){
+        if (visits <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double delta = (1 - confidence) / Math.max(1, moveCount);
+        return Math.sqrt(Math.log(1 / delta) / (2.0 * visits));
+    }
+    //**********************************************************/
+
+    /*
+     * Return the lowest win rate the move may have, at the confidence.
+     */
+    static double lowerBound(double wins, int visits, int moveCount, double confidence){
+        return visits <= 0 ? 0 : wins / visits - radius(visits, moveCount, confidence);
+    }
+    //**********************************************************/
+
+    /*
+     * Return the highest win rate the move may have, at the confidence.
+     */
+    static double upperBound(double wins, int visits, int moveCount, double confidence){
+        return visits <= 0 ? 1 : wins / visits + radius(visits, moveCount, confidence);
+    }
+    //**********************************************************/
+}
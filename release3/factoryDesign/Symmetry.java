@@ -0,0 +1,52 @@
+//**********************************************************/
+import java.util.concurrent.ConcurrentHashMap;
+//**********************************************************/
+
+
+public class Symmetry implements Game{
+
+    //* Fields
+    //**********************************************************/
+    static final int COUNT = 8; // the symmetries of a square board, 0 is the identity
+    private static final ConcurrentHashMap<Integer, int[][]> CELL_MAPS = new ConcurrentHashMap<>();
+    //**********************************************************/
+
+    //* Symmetry constructor, only static tables are provided
+    private Symmetry(){
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Return, for every symmetry, where each button index of a board of the given size
+     * is carried to. The tables are built once per size and shared.
+     */
+    static int[][] cellMaps(int size){
+        return CELL_MAPS.computeIfAbsent(size, Symmetry::createCellMaps);
+    }
+    //**********************************************************/
+
+    /*
+     * Build the four rotations and four reflections of a board of the given size.
+     */
+    private static int[][] createCellMaps(int size){
+        int[][] maps = new int[COUNT][size * size];
+        int last = size - 1;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int cell = i * size + j;
+                maps[0][cell] = i * size + j; // identity
+                maps[1][cell] = j * size + (last - i); // rotation by 90 degrees
+                maps[2][cell] = (last - i) * size + (last - j); // rotation by 180 degrees
+                maps[3][cell] = (last - j) * size + i; // rotation by 270 degrees
+                maps[4][cell] = i * size + (last - j); // mirror left to right
+                maps[5][cell] = (last - i) * size + j; // mirror top to bottom
+                maps[6][cell] = j * size + i; // mirror on the equal diagonal
+                maps[7][cell] = (last - j) * size + (last - i); // mirror on the unequal diagonal
+            }
+        }
+        return maps;
+    }
+    //**********************************************************/
+}
@@ -0,0 +1,197 @@
+//**********************************************************/
+import java.util.concurrent.atomic.AtomicLongArray;
+//**********************************************************/
+
+
+public class TranspositionTable implements Game{
+
+    //* Fields
+    //**********************************************************/
+    // Every bucket holds two entries of two longs, the hash xor the data, and the data.
+    // A torn write between threads fails the xor check and reads as a miss, so no locks
+    // are needed. The first entry of a bucket keeps the most valuable result, the second
+    // one always takes the newest result that did not make it into the first.
+    //**********************************************************/
+    static final long KIND_BOUND = 1L << 63; // set for exact search bounds, clear for statistics
+    static final int EXACT = 1, LOWER = 2, UPPER = 3; // the bound flags
+
+    private static final int DEFAULT_BUCKETS = 1 << 16; // 2 MB of entries
+
+    private final AtomicLongArray slots; // four longs per bucket
+    private final int bucketMask; // bucket count - 1, the bucket count is a power of two
+    private volatile int generation; // the search generation, 7 bits
+    //**********************************************************/
+
+    //* Transposition table constructor, the default size
+    TranspositionTable(){
+        this(DEFAULT_BUCKETS);
+    }
+    //**********************************************************/
+
+    //* Transposition table constructor, the bucket count is rounded up to a power of two
+    TranspositionTable(int buckets){
+        int count = Integer.highestOneBit(Math.max(1, buckets - 1)) << 1;
+        slots = new AtomicLongArray(4 * count);
+        bucketMask = count - 1;
+        generation = 0;
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Start a new search generation, entries of older generations are replaced first.
+     */
+    public void newSearch(){
+        generation = (generation + 1) & 0x7F;
+    }
+    //**********************************************************/
+
+    /*
+     * Forget every entry, so the next search starts from nothing learned before.
+     */
+    public void clear(){
+        for (int slot = 0; slot < slots.length(); slot++) {
+            slots.set(slot, 0);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return the data stored for a hash, 0 if the hash is not in the table.
+     */
+    public long probe(long hash){
+        int base = 4 * ((int) (hash ^ (hash >>> 32)) & bucketMask);
+        for (int slot = base; slot < base + 4; slot += 2) {
+            long data = slots.get(slot + 1);
+            if ((slots.get(slot) ^ data) == hash && data != 0) {
+                return data;
+            }
+        }
+        return 0;
+    }
+    //**********************************************************/
+
+    /*
+     * Store the data of a hash. An entry of the same hash is overwritten. Otherwise the
+     * first entry is replaced when it is older or worth no more than the new data, and
+     * the second entry is replaced in every other case.
+     */
+    public void store(long hash, long data){
+        data = (data & ~(0x7FL << 56)) | ((long) generation << 56);
+        int base = 4 * ((int) (hash ^ (hash >>> 32)) & bucketMask);
+        int slot = base;
+        long first = slots.get(base + 1);
+        if ((slots.get(base) ^ first) != hash) {
+            long second = slots.get(base + 3);
+            if ((slots.get(base + 2) ^ second) == hash) {
+                slot = base + 2;
+            } else if (generationOf(first) == generation && weight(first) > weight(data)) {
+                slot = base + 2;
+            }
+        }
+        slots.set(slot + 1, data);
+        slots.set(slot, hash ^ data);
+    }
+    //**********************************************************/
+
+    /*
+     * Return the replacement weight of an entry, the visits or the search depth.
+     */
+    private static long weight(long data){
+        return (data & KIND_BOUND) != 0 ? boundDepth(data) : statVisits(data);
+    }
+    //**********************************************************/
+
+    /*
+     * Return the generation an entry was written in.
+     */
+    private static int generationOf(long data){
+        return (int) (data >>> 56) & 0x7F;
+    }
+    //**********************************************************/
+
+    //**********************************************************/
+    // statistics entries, visits in bits 0-27, win halves in bits 28-55
+    //**********************************************************/
+
+    /*
+     * Pack monte carlo statistics, the values saturate at 28 bits.
+     */
+    static long packStats(int visits, long winHalves){
+        long v = Math.min(visits, (1 << 28) - 1);
+        long w = Math.min(winHalves, (1L << 28) - 1);
+        return v | (w << 28);
+    }
+    //**********************************************************/
+
+    /*
+     * Unpack the visit number of a statistics entry.
+     */
+    static int statVisits(long data){
+        return (int) (data & ((1 << 28) - 1));
+    }
+    //**********************************************************/
+
+    /*
+     * Unpack the win halves of a statistics entry.
+     */
+    static long statWinHalves(long data){
+        return (data >>> 28) & ((1L << 28) - 1);
+    }
+    //**********************************************************/
+
+    //**********************************************************/
+    // bound entries, value in bits 0-7, flag in bits 8-9, best move + 1 in bits 10-25,
+    // depth in bits 26-41
+    //**********************************************************/
+
+    /*
+     * Pack an exact search result, the best move is -1 when there is none.
+     */
+    static long packBound(int value, int flag, int bestMove, int depth){
+        return KIND_BOUND | ((value + 128) & 0xFFL) | ((long) flag << 8)
+            | ((long) ((bestMove + 1) & 0xFFFF) << 10) | ((long) (depth & 0xFFFF) << 26);
+    }
+    //**********************************************************/
+
+    /*
+     * Unpack the value of a bound entry.
+     */
+    static int boundValue(long data){
+        return (int) (data & 0xFF) - 128;
+    }
+    //**********************************************************/
+
+    /*
+     * Unpack the flag of a bound entry, EXACT, LOWER or UPPER.
+     */
+    static int boundFlag(long data){
+        return (int) (data >>> 8) & 0x3;
+    }
+    //**********************************************************/
+
+    /*
+     * Unpack the best move of a bound entry, -1 if there is none.
+     */
+    static int boundMove(long data){
+        return ((int) (data >>> 10) & 0xFFFF) - 1;
+    }
+    //**********************************************************/
+
+    /*
+     * Unpack the depth of a bound entry.
+     */
+    static int boundDepth(long data){
+        return (int) (data >>> 26) & 0xFFFF;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the data is a bound entry.
+     */
+    static boolean isBound(long data){
+        return (data & KIND_BOUND) != 0;
+    }
+    //**********************************************************/
+}
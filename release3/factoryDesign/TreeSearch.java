@@ -0,0 +1,732 @@
+//**********************************************************/
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+//**********************************************************/
+
+
+public class TreeSearch implements Game{
+
+    //* Fields
+    //**********************************************************/
+    private static final double EXPLORATION = 2.5; // same exploration weight as the button UCT score
+    private static final int VIRTUAL_LOSS = 3; // losses placed on a node while a thread is below it
+    static final int MAX_NODES = 1 << 20; // the most nodes a tree may hold, 23 MB in each arena
+    private static final int PONDER_SLICE = 64; // the simulations a ponder runs between two pauses
+    private static final long PAUSE_STEP_NANOS = 1_000_000; // the longest a pausing ponder sleeps before it looks at the stop flag
+
+    private int threadCount; // how many threads share the tree
+    private NodeArena nodes; // the nodes of the shared search tree, null before the first search
+    private NodeArena spare; // the arena a reused subtree is compacted into, null until needed
+    private int root; // the root of the shared search tree, NodeArena.NONE if there is no tree
+    private byte rootMark; // the marker byte of the party which made the last move at the root
+    private long rootBoardHash; // the hash of the board at the root, in board coordinates
+    private long rootHash; // the canonical hash of the board at the root
+    private boolean symmetricRoot; // true if the root keeps one move of every group of symmetric moves
+    private int reusedVisits; // visits the root already had when the last search started
+    private AtomicInteger simulationsLeft; // simulations not yet claimed by a thread
+    private AtomicInteger simulationsDone; // simulations finished by all threads
+    private long deadline; // the System.nanoTime() at which the threads stop, 0 if none
+    private AtomicBoolean cancelled; // set when the threads have to stop at once
+    private final TranspositionTable table; // statistics of positions searched before in this game
+    private int raveEquivalence; // the visits at which RAVE and UCT weigh the same, 0 for plain UCT
+    private double stopConfidence; // the confidence at which a settled search stops early, 0 to run the whole budget
+    private volatile boolean settled; // set once the move of the running search can no longer change
+    private int budget; // the simulations the running search may take, Integer.MAX_VALUE if it is only timed
+    private AtomicLong cpuNanos; // the processor time of the threads of the last search
+    //**********************************************************/
+
+    //* Tree search constructor, the search keeps its own transposition table
+    TreeSearch(int threadCount){
+        this.threadCount = Math.max(1, threadCount);
+        table = new TranspositionTable();
+        root = NodeArena.NONE;
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Set how many threads run selection, expansion, simulation and backpropagation
+     * on the shared tree at the same time.
+     */
+    public void setThreadCount(int threadCount){
+        this.threadCount = Math.max(1, threadCount);
+    }
+    //**********************************************************/
+
+    /*
+     * Blend all moves as first statistics into the selection, see NodeArena.getRaveScore.
+     * The equivalence is the visit number at which both count about the same, 0 turns
+     * RAVE off.
+     */
+    public void setRaveEquivalence(int equivalence){
+        raveEquivalence = Math.max(0, equivalence);
+    }
+    //**********************************************************/
+
+    /*
+     * Stop a search early once its move is settled at the given confidence, see
+     * isSettled. Zero runs the whole budget.
+     */
+    public void setStopConfidence(double confidence){
+        stopConfidence = confidence > 0 && confidence < 1 ? confidence : 0;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations of the budget the last search did not need, because
+     * its move was settled before. A search with only a time budget saves none.
+     */
+    public int getSavedSimulations(){
+        if (!settled || budget == Integer.MAX_VALUE || simulationsDone == null) {
+            return 0;
+        }
+        return Math.max(0, budget - simulationsDone.get());
+    }
+    //**********************************************************/
+
+    /*
+     * Get the processor time of the threads of the last search, in nanoseconds.
+     */
+    public long getCpuNanos(){
+        return cpuNanos == null ? 0 : cpuNanos.get();
+    }
+    //**********************************************************/
+
+    /*
+     * Return how far the win rate of the move the search would play lies above the best
+     * win rate of the other moves at the root, 1 if there is no other move.
+     */
+    public double getLeadMargin(){
+        int first = root == NodeArena.NONE ? NodeArena.NONE : nodes.getFirstChild(root);
+        if (first == NodeArena.NONE) {
+            return 0;
+        }
+        int move = findBestMove();
+        double leader = 0;
+        double best = -1;
+        for (int child = first; ; child++) {
+            int visits = nodes.getVisitNumber(child);
+            if (visits > 0) {
+                double rate = nodes.getWinHalves(child) / 2.0 / visits;
+                if (nodes.getMove(child) == move) {
+                    leader = rate;
+                } else {
+                    best = Math.max(best, rate);
+                }
+            }
+            if (nodes.isLastSibling(child)) {
+                break;
+            }
+        }
+        return best < 0 ? 1 : leader - best;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the root of the last search is proven.
+     */
+    public boolean isRootProven(){
+        return root != NodeArena.NONE && nodes.isProven(root);
+    }
+    //**********************************************************/
+
+    /*
+     * Get the nodes of the tree, null before the first search.
+     */
+    public NodeArena getNodes(){
+        return nodes;
+    }
+    //**********************************************************/
+
+    /*
+     * Get the number of simulations the last search ran.
+     */
+    public int getCompletedSimulations(){
+        return simulationsDone == null ? 0 : simulationsDone.get();
+    }
+    //**********************************************************/
+
+    /*
+     * Search the board state with the given number of simulations, or until the deadline
+     * if there is one, the search is cancelled or the root is proven, and return the button
+     * index of the chosen move. The board state itself is not changed.
+     */
+    public int search(State boardState, int altNum, int numSimulations, long deadline, SplittableRandom seedSource,
+                      AtomicBoolean cancelled){
+        startSearch(boardState, altNum, numSimulations, deadline, cancelled, true);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            State threadState = boardState.copyState();
+            MonteCarloSearch rollout = new MonteCarloSearch(threadState, 0, seedSource.split());
+            results.add(MonteCarloSearch.getWorkerPool().submit(() -> {
+                long cpuStart = MonteCarloSearch.threadCpuNanos();
+                runThread(threadState, rollout, altNum, Integer.MAX_VALUE);
+                cpuNanos.addAndGet(MonteCarloSearch.threadCpuNanos() - cpuStart);
+            }));
+        }
+        try {
+            for (Future<?> result : results) {
+                result.get(); // wait for every thread to finish
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A tree search thread failed.", e.getCause());
+        }
+        storeStatistics(boardState, altNum);
+        return findBestMove();
+    }
+    //**********************************************************/
+
+    /*
+     * Search the board state on the calling thread alone, until the simulations are spent,
+     * the search is stopped or the root is proven. The ponder runs at half duty: after
+     * every PONDER_SLICE simulations it sleeps as long as they took. It takes at most
+     * half of a core from the player, whatever the thread priorities of the host are
+     * worth. The tree is kept for the search of the next move, which takes over the
+     * subtree of the move played meanwhile. A settled move does not end the ponder, its
+     * subtree is the one most likely to be taken over. A new root gets a child for every
+     * free button, symmetric ones included, since the player may answer with any of them.
+     * The board state itself is not changed.
+     */
+    public void ponder(State boardState, int altNum, int numSimulations, SplittableRandom seedSource,
+                       AtomicBoolean stopped){
+        startSearch(boardState, altNum, numSimulations, 0, stopped, false);
+        State threadState = boardState.copyState();
+        MonteCarloSearch rollout = new MonteCarloSearch(threadState, 0, seedSource.split());
+        double confidence = stopConfidence;
+        stopConfidence = 0;
+        long cpuStart = MonteCarloSearch.threadCpuNanos();
+        try {
+            while (!stopped.get() && !nodes.isProven(root) && simulationsLeft.get() > 0) {
+                long sliceStart = System.nanoTime();
+                runThread(threadState, rollout, altNum, PONDER_SLICE);
+                pause(System.nanoTime() - sliceStart, stopped);
+            }
+        } finally {
+            stopConfidence = confidence;
+            cpuNanos.addAndGet(MonteCarloSearch.threadCpuNanos() - cpuStart);
+        }
+        storeStatistics(boardState, altNum);
+    }
+    //**********************************************************/
+
+    /*
+     * Sleep for the given nanoseconds, in short steps so that a stop is noticed at once.
+     */
+    private static void pause(long nanos, AtomicBoolean stopped){
+        long end = System.nanoTime() + nanos;
+        while (!stopped.get()) {
+            long left = end - System.nanoTime();
+            if (left <= 0) {
+                return;
+            }
+            LockSupport.parkNanos(Math.min(left, PAUSE_STEP_NANOS));
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Store the statistics of the nodes with enough visits to serve as a prior in the
+     * transposition table, under the canonical hash of their board, for the searches of
+     * later moves. This runs once the threads have finished, so the stored visits hold
+     * no virtual losses.
+     */
+    private void storeStatistics(State boardState, int altNum){
+        if (root != NodeArena.NONE) {
+            storeSubtree(boardState.copyState(), root, altNum, rootHash);
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Store the statistics of the node and of its descendants with at least PRIOR_VISITS
+     * visits, walking the board down the moves of the tree and back.
+     */
+    private void storeSubtree(State walkState, int node, int tempAltNum, long hash){
+        table.store(hash, TranspositionTable.packStats(nodes.getVisitNumber(node), nodes.getWinHalves(node)));
+        int mark = walkState.getJournalSize();
+        int child = nodes.getFirstChild(node);
+        while (child != NodeArena.NONE) {
+            if (nodes.getVisitNumber(child) >= NodeArena.PRIOR_VISITS) {
+                int nextAltNum = applyMove(walkState, child, tempAltNum);
+                storeSubtree(walkState, child, nextAltNum, walkState.getCanonicalHash());
+                walkState.undoTo(mark);
+            }
+            child = nodes.isLastSibling(child) ? NodeArena.NONE : child + 1;
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Set the root of a search, kept from the last search if the board is found in its
+     * tree, and reset the budget, the clock and the counters. A new root keeps one move
+     * of every group of symmetric moves if asked to, see createChildren.
+     */
+    private void startSearch(State boardState, int altNum, int numSimulations, long deadline, AtomicBoolean cancelled,
+                             boolean symmetricRoot){
+        int freeButtons = 0;
+        for (int cell = 0; cell < boardState.size * boardState.size; cell++) {
+            if (boardState.getCell(cell) == Game.EmptyCell) {
+                freeButtons++;
+            }
+        }
+        long needed = (long) numSimulations * freeButtons + 1; // every simulation expands at most one node
+        int reusable = findReusableRoot(boardState.getHash());
+        if (reusable == NodeArena.NONE) { // a new tree, in the present arena if it is large enough
+            int capacity = (int) Math.min(MAX_NODES, needed);
+            if (nodes == null || nodes.capacity() < capacity) {
+                NodeArena old = nodes;
+                nodes = arenaFor(capacity);
+                spare = spare == null ? old : spare;
+            }
+            nodes.clear();
+            root = nodes.newRoot();
+        } else if (reusable != root || nodes.capacity() - nodes.size() < Math.min(MAX_NODES, needed)) {
+            NodeArena compacted = arenaFor((int) Math.min(MAX_NODES, nodes.size() + needed));
+            root = nodes.copySubtree(reusable, compacted); // the dropped siblings free their nodes
+            spare = nodes;
+            nodes = compacted;
+        }
+        rootMark = altNum % 2 == 0 ? Game.OCell : Game.XCell; // the party which made the last move
+        rootBoardHash = boardState.getHash();
+        rootHash = boardState.getCanonicalHash();
+        this.symmetricRoot = symmetricRoot;
+        reusedVisits = nodes.getVisitNumber(root);
+        table.newSearch();
+        simulationsLeft = new AtomicInteger(numSimulations);
+        simulationsDone = new AtomicInteger();
+        budget = numSimulations;
+        settled = false;
+        cpuNanos = new AtomicLong();
+        this.deadline = deadline;
+        this.cancelled = cancelled;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the visits a search of the board would start with, those of the node of the
+     * board in the tree of the last search, 0 if the tree does not hold the board.
+     */
+    public int getReusableVisits(long boardHash){
+        int node = findReusableRoot(boardHash);
+        return node == NodeArena.NONE ? 0 : nodes.getVisitNumber(node);
+    }
+    //**********************************************************/
+
+    /*
+     * Return an empty arena of at least the given capacity, the spare one if it is large
+     * enough, and a new one otherwise.
+     */
+    private NodeArena arenaFor(int capacity){
+        if (spare != null && spare.capacity() >= capacity) {
+            NodeArena free = spare;
+            spare = null;
+            return free;
+        }
+        return new NodeArena(Math.max(capacity, 1));
+    }
+    //**********************************************************/
+
+    /*
+     * Look for the board among the root and the nodes up to two moves below it, the
+     * computer move and the reply of the player. The matching node becomes the new root
+     * with its statistics, and its siblings are dropped. Return NONE if there is no match,
+     * or if the match was proven without children, a dead draw, which has no moves to
+     * choose from.
+     */
+    private int findReusableRoot(long boardHash){
+        int node = findNode(boardHash);
+        if (node != NodeArena.NONE && nodes.isProven(node) && nodes.getFirstChild(node) == NodeArena.NONE) {
+            return NodeArena.NONE;
+        }
+        return node;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the node of the board among the root and the nodes up to two moves below
+     * it, NONE if there is none.
+     */
+    private int findNode(long boardHash){
+        if (root == NodeArena.NONE) {
+            return NodeArena.NONE;
+        }
+        if (rootBoardHash == boardHash) {
+            return root;
+        }
+        int first = nodes.getFirstChild(root);
+        if (first == NodeArena.NONE) {
+            return NodeArena.NONE;
+        }
+        byte childMark = rootMark == Game.XCell ? Game.OCell : Game.XCell;
+        for (int child = first; ; child++) {
+            long childHash = rootBoardHash ^ Zobrist.key(childMark, nodes.getMove(child));
+            if (childHash == boardHash) {
+                return child;
+            }
+            int grandChild = nodes.getFirstChild(child);
+            while (grandChild != NodeArena.NONE) {
+                if ((childHash ^ Zobrist.key(rootMark, nodes.getMove(grandChild))) == boardHash) {
+                    return grandChild;
+                }
+                grandChild = nodes.isLastSibling(grandChild) ? NodeArena.NONE : grandChild + 1;
+            }
+            if (nodes.isLastSibling(child)) {
+                return NodeArena.NONE;
+            }
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Get the visits the root already had when the last search started, simulations
+     * which were kept from the searches of earlier moves.
+     */
+    public int getReusedVisits(){
+        return reusedVisits;
+    }
+    //**********************************************************/
+
+    /*
+     * Drop the tree, so that the next search starts from scratch.
+     */
+    public void clearTree(){
+        root = NodeArena.NONE;
+    }
+    //**********************************************************/
+
+    /*
+     * Drop the tree and forget the statistics in the table, so that nothing learned in
+     * the last game carries over into the next one.
+     */
+    public void newGame(){
+        clearTree();
+        table.clear();
+    }
+    //**********************************************************/
+
+    /*
+     * Claim simulations from the shared budget until it runs out. Every simulation walks
+     * down the tree, expands a leaf, plays out the game and updates the path. A move which
+     * ends the game proves its node, and the proof is carried up the path as far as the
+     * parents allow. The threads stop once the root is proven or its move is settled, or
+     * after the given number of simulations. The path is kept in an array of the thread.
+     */
+    private void runThread(State threadState, MonteCarloSearch rollout, int altNum, int maxSimulations){
+        int mark = threadState.getJournalSize();
+        int cellCount = threadState.size * threadState.size;
+        int[] playedAt = new int[cellCount]; // the move order of each button in a simulation
+        Arrays.fill(playedAt, -1);
+        int[] path = new int[cellCount + 1]; // the nodes from the root down
+        int iteration = 0;
+        while (!nodes.isProven(root) && !settled && iteration < maxSimulations
+            && simulationsLeft.getAndDecrement() > 0) {
+            if (cancelled.get()
+                || (iteration % MonteCarloSearch.CLOCK_CHECK_INTERVAL == 0 && MonteCarloSearch.pastDeadline(deadline))) {
+                break; // cancelled, or the time budget is spent
+            }
+            if (stopConfidence > 0 && iteration > 0 && iteration % StoppingRule.CHECK_INTERVAL == 0 && isSettled()) {
+                settled = true; // the other threads stop at their next simulation
+                break;
+            }
+            iteration++;
+            int length = 1;
+            path[0] = root;
+            int node = root;
+            int tempAltNum = altNum;
+
+            // selection, walk down while the nodes are expanded, then expand the first leaf,
+            // a node whose move ends the game, a dead draw included, is proven on the spot
+            while (!threadState.isPresentMoveTerminal()) {
+                int first = nodes.getFirstChild(node);
+                boolean leaf = first == NodeArena.NONE;
+                if (leaf) {
+                    first = createChildren(threadState, node, tempAltNum, node == root && symmetricRoot);
+                    if (first == NodeArena.NONE) {
+                        break; // the arena is full, the simulation starts from this node
+                    }
+                }
+                node = selectChild(first);
+                nodes.addVirtualLoss(node, VIRTUAL_LOSS);
+                tempAltNum = applyMove(threadState, node, tempAltNum);
+                path[length] = node;
+                length++;
+                if (threadState.isPresentMoveTerminal() || threadState.isDeadDraw()) {
+                    nodes.setProven(node, threadState.isDraw ? NodeArena.PROVEN_DRAW : NodeArena.PROVEN_WIN);
+                    break;
+                }
+                if (leaf) {
+                    break;
+                }
+            }
+
+            rollout.playOut(tempAltNum); // simulation from the new leaf
+
+            // backpropagation, every node is scored for the party which moved into it
+            byte winner = threadState.getWinner();
+            for (int i = 0; i < length; i++) {
+                int visited = path[i];
+                int result = threadState.isDraw ? 1 : (winner == markAt(altNum, i) ? 2 : 0);
+                nodes.update(visited, result, i == 0 ? 0 : VIRTUAL_LOSS);
+            }
+            if (raveEquivalence > 0) {
+                updateAmaf(threadState, path, length, altNum, mark, playedAt);
+            }
+            for (int i = length - 1; i > 0 && nodes.isProven(path[i]); i--) {
+                if (!nodes.proveFromChildren(path[i - 1])) {
+                    break; // the parent has unproven moves left
+                }
+            }
+            threadState.undoTo(mark); // take back the tree and rollout moves
+            simulationsDone.incrementAndGet();
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Return the marker byte of the party which moved into the node at the given depth of
+     * a search started at the alternating number, the party of the last move at the root.
+     */
+    private static byte markAt(int altNum, int depth){
+        return (altNum + depth) % 2 == 0 ? Game.OCell : Game.XCell;
+    }
+    //**********************************************************/
+
+    /*
+     * Return true if the most visited move at the root, the one the search would play,
+     * can no longer be overtaken. Either its lead in visits is larger than the simulations
+     * left, or its win rate is above the win rate of every other move at the stopping
+     * confidence, see StoppingRule.
+     */
+    private boolean isSettled(){
+        int first = nodes.getFirstChild(root);
+        if (first == NodeArena.NONE) {
+            return false;
+        }
+        int leader = NodeArena.NONE;
+        int runnerUpVisits = 0;
+        int moveCount = 0;
+        for (int child = first; ; child++) {
+            int visits = nodes.getVisitNumber(child);
+            if (leader == NodeArena.NONE || visits > nodes.getVisitNumber(leader)) {
+                runnerUpVisits = leader == NodeArena.NONE ? 0 : nodes.getVisitNumber(leader);
+                leader = child;
+            } else {
+                runnerUpVisits = Math.max(runnerUpVisits, visits);
+            }
+            moveCount++;
+            if (nodes.isLastSibling(child)) {
+                break;
+            }
+        }
+        if (nodes.getProven(leader) == NodeArena.PROVEN_LOSS) {
+            return false; // the search plays another move, the statistics do not tell which
+        }
+        if (budget != Integer.MAX_VALUE && nodes.getVisitNumber(leader) - runnerUpVisits > simulationsLeft.get()) {
+            return true;
+        }
+        double floor = StoppingRule.lowerBound(nodes.getWinHalves(leader) / 2.0, nodes.getVisitNumber(leader),
+            moveCount, stopConfidence);
+        for (int child = first; child < first + moveCount; child++) {
+            if (child != leader && StoppingRule.upperBound(nodes.getWinHalves(child) / 2.0, nodes.getVisitNumber(child),
+                moveCount, stopConfidence) >= floor) {
+                return false;
+            }
+        }
+        return true;
+    }
+    //**********************************************************/
+
+    /*
+     * Give every child along the path an all moves as first result, if its party played
+     * its move at that point of the simulation or later, in the tree or in the playout.
+     */
+    private void updateAmaf(State threadState, int[] path, int length, int altNum, int mark, int[] playedAt){
+        int order = 0;
+        for (int k = mark; k < threadState.getJournalSize(); k++) {
+            int cell = threadState.getJournalEntry(k);
+            if (cell != State.TERMINAL_ENTRY) {
+                playedAt[cell] = order++;
+            }
+        }
+        byte winner = threadState.getWinner();
+        for (int i = 0; i < length; i++) { // the moves after path node i start at order i
+            int child = nodes.getFirstChild(path[i]);
+            byte childMark = markAt(altNum, i + 1);
+            while (child != NodeArena.NONE) {
+                int cell = nodes.getMove(child);
+                byte moved = threadState.getCell(cell);
+                if (playedAt[cell] >= i && moved == childMark) {
+                    nodes.updateAmaf(child, winner == Game.EmptyCell ? 1 : (winner == moved ? 2 : 0));
+                }
+                child = nodes.isLastSibling(child) ? NodeArena.NONE : child + 1;
+            }
+        }
+        for (int k = mark; k < threadState.getJournalSize(); k++) {
+            int cell = threadState.getJournalEntry(k);
+            if (cell != State.TERMINAL_ENTRY) {
+                playedAt[cell] = -1;
+            }
+        }
+    }
+    //**********************************************************/
+
+    /*
+     * Expand the node with a child for every button which is still free in the thread
+     * state, and return its first child, NONE if the arena is full. At the root of a
+     * search, not a ponder, only one move of every group of moves equivalent under the
+     * board symmetries is kept, and it is kept in board coordinates, so the chosen move
+     * needs no mapping back. A child whose position an earlier search stored in the
+     * transposition table, looked up by its canonical hash, takes the stored win rate as
+     * its prior, see NodeArena.
+     */
+    private int createChildren(State threadState, int node, int tempAltNum, boolean symmetric){
+        String marker = tempAltNum % 2 == 0 ? Game.X : Game.O;
+        int group = symmetric ? threadState.getSymmetryGroup() : 1;
+        int count = 0;
+        int lastCell = -1;
+        for (int i = 0; i < threadState.buttonList.size(); i++) {
+            if (!threadState.buttonList.get(i).visited() && threadState.canonicalCell(i, group) == i) {
+                count++;
+                lastCell = i;
+            }
+        }
+        int first = count == 0 ? NodeArena.NONE : nodes.allocate(count);
+        if (first == NodeArena.NONE) {
+            return NodeArena.NONE;
+        }
+        int child = first;
+        for (int i = 0; i <= lastCell; i++) {
+            if (!threadState.buttonList.get(i).visited() && threadState.canonicalCell(i, group) == i) {
+                long data = table.probe(threadState.canonicalHashAfter(i, marker));
+                int visits = 0;
+                long halves = 0;
+                if (data != 0 && !TranspositionTable.isBound(data)) {
+                    visits = TranspositionTable.statVisits(data);
+                    halves = TranspositionTable.statWinHalves(data);
+                }
+                nodes.setChild(child, i, i == lastCell, visits, halves);
+                child++;
+            }
+        }
+        return nodes.expand(node, first);
+    }
+    //**********************************************************/
+
+    /*
+     * Pick the unproven child with the largest UCT score, virtual losses included. If
+     * every child is proven, which happens while another thread has not yet proven the
+     * parent, the child with the best proven value is taken.
+     */
+    private int selectChild(int first){
+        int parentVisits = 0;
+        int last = first;
+        while (true) {
+            parentVisits += nodes.getVisitNumber(last);
+            if (nodes.isLastSibling(last)) {
+                break;
+            }
+            last++;
+        }
+        double logParentVisits = Math.log(Math.max(1, parentVisits));
+        int best = NodeArena.NONE;
+        double max = -1;
+        for (int child = first; child <= last; child++) {
+            if (nodes.isProven(child)) {
+                continue; // its value is known, simulations cannot change it
+            }
+            double uctScore = raveEquivalence > 0
+                ? nodes.getRaveScore(child, raveEquivalence)
+                : nodes.getUCTScore(child, logParentVisits, EXPLORATION);
+            if (uctScore > max) {
+                max = uctScore;
+                best = child;
+            }
+        }
+        if (best == NodeArena.NONE) {
+            best = first;
+            for (int child = first; child <= last; child++) {
+                if (nodes.getProven(child) > nodes.getProven(best)) {
+                    best = child;
+                }
+            }
+        }
+        return best;
+    }
+    //**********************************************************/
+
+    /*
+     * Record the move of a node on the thread state, and return the next alternating number.
+     */
+    private int applyMove(State threadState, int node, int tempAltNum){
+        int row = nodes.getMove(node) / threadState.size;
+        int col = nodes.getMove(node) % threadState.size;
+        threadState.recordPlayData(row, col, tempAltNum % 2 == 0 ? Game.X : Game.O);
+        threadState.setMoveNumber(tempAltNum + 1);
+        return tempAltNum + 1;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the root child of the given button index, NONE if the root has no such child.
+     */
+    public int findChild(int move){
+        int child = root == NodeArena.NONE ? NodeArena.NONE : nodes.getFirstChild(root);
+        while (child != NodeArena.NONE) {
+            if (nodes.getMove(child) == move) {
+                return child;
+            }
+            child = nodes.isLastSibling(child) ? NodeArena.NONE : child + 1;
+        }
+        return NodeArena.NONE;
+    }
+    //**********************************************************/
+
+    /*
+     * Return the button index of the root child to play: a proven win if there is one,
+     * otherwise the most visited child which is not a proven loss. If every child is a
+     * proven loss the most visited one is played.
+     */
+    public int findBestMove(){
+        int first = nodes.getFirstChild(root);
+        if (first == NodeArena.NONE) {
+            return 0;
+        }
+        int best = NodeArena.NONE;
+        int last = first;
+        for (int child = first; ; child++) {
+            int proven = nodes.getProven(child);
+            if (proven == NodeArena.PROVEN_WIN) {
+                return nodes.getMove(child);
+            }
+            if (proven != NodeArena.PROVEN_LOSS
+                && (best == NodeArena.NONE || nodes.getVisitNumber(child) > nodes.getVisitNumber(best))) {
+                best = child;
+            }
+            last = child;
+            if (nodes.isLastSibling(child)) {
+                break;
+            }
+        }
+        if (best == NodeArena.NONE) {
+            best = first;
+            for (int child = first; child <= last; child++) {
+                if (nodes.getVisitNumber(child) > nodes.getVisitNumber(best)) {
+                    best = child;
+                }
+            }
+        }
+        return nodes.getMove(best);
+    }
+    //**********************************************************/
+}
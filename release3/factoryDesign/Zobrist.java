@@ -0,0 +1,72 @@
+//**********************************************************/
+import java.util.SplittableRandom;
+//**********************************************************/
+
+
+public class Zobrist implements Game{
+
+    //* Fields
+    //**********************************************************/
+    static final int MAX_SIZE = 32; // the largest board side with keys
+    static final int MAX_CELLS = MAX_SIZE * MAX_SIZE; // enough buttons for a 32x32 board
+    private static final long[] X_KEYS = new long[MAX_CELLS]; // one random key per button and marker
+    private static final long[] O_KEYS = new long[MAX_CELLS];
+    private static final long[] SIZE_KEYS = new long[MAX_SIZE + 1]; // the key of an empty board of each size
+    private static final long[] LENGTH_KEYS = new long[MAX_SIZE + 1]; // mixed in when fewer markers than the size win
+
+    static {
+        SplittableRandom keySource = new SplittableRandom(0x5DEECE66DL); // fixed, so hashes are stable
+        for (int cell = 0; cell < MAX_CELLS; cell++) {
+            X_KEYS[cell] = keySource.nextLong();
+            O_KEYS[cell] = keySource.nextLong();
+        }
+        for (int size = 0; size < SIZE_KEYS.length; size++) {
+            SIZE_KEYS[size] = keySource.nextLong();
+        }
+        for (int length = 0; length < LENGTH_KEYS.length; length++) {
+            LENGTH_KEYS[length] = keySource.nextLong();
+        }
+    }
+    //**********************************************************/
+
+    //* Zobrist constructor, only static keys are provided
+    private Zobrist(){
+    }
+    //**********************************************************/
+
+    //* Methods
+
+    /*
+     * Return the key of a marker on a button index.
+     */
+    static long key(String marker, int cell){
+        return marker.equals(Game.X) ? X_KEYS[cell] : O_KEYS[cell];
+    }
+    //**********************************************************/
+
+    /*
+     * Return the key of a byte marker on a button index.
+     */
+    static long key(byte mark, int cell){
+        return mark == Game.XCell ? X_KEYS[cell] : O_KEYS[cell];
+    }
+    //**********************************************************/
+
+    /*
+     * Return the hash of an empty board, boards of different size never share a hash.
+     */
+    static long emptyBoard(int size){
+        return SIZE_KEYS[size];
+    }
+    //**********************************************************/
+
+    /*
+     * Return the hash of an empty board played to the given win length. Games of
+     * different win length never share a hash, a full size win length keeps the plain
+     * hash of the board size.
+     */
+    static long emptyBoard(int size, int winLength){
+        return winLength == size ? SIZE_KEYS[size] : SIZE_KEYS[size] ^ LENGTH_KEYS[winLength];
+    }
+    //**********************************************************/
+}